@@ -24,5 +24,7 @@ public interface AndroidConstants {
 	public static final String FILE_XML_ANDROIDMANIFEST = "AndroidManifest.xml";
 	public static final String FILE_XML_STRINGS = "strings.xml";
 	public static final String FILE_XML_BUILD ="build.xml";
+	public static final String FILE_PROPERTIES_PROJECT = "project.properties";
+	public static final String FILE_PROPERTIES_LOCAL = "local.properties";
 
 }
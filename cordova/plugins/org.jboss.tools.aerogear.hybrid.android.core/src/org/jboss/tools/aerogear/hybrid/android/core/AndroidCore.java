@@ -10,6 +10,7 @@
  ******************************************************************************/
 package org.jboss.tools.aerogear.hybrid.android.core;
 
+import org.jboss.tools.aerogear.hybrid.android.core.adt.AndroidDeviceMonitor;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 
@@ -41,6 +42,7 @@ public class AndroidCore implements BundleActivator {
 	 * @see org.eclipse.ui.plugin.AbstractUIPlugin#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext context) throws Exception {
+		AndroidDeviceMonitor.getInstance().stop();
 		AndroidCore.context = null;
 	}
 
@@ -0,0 +1,433 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.android.core.adt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * A client for the host protocol of the adb server. Talks to the
+ * server directly over TCP instead of starting an adb process for every
+ * command. The adb server must already be running, all methods throw
+ * a {@link ServerNotReachableException} if it can not be reached.
+ *
+ * @author Gorkem Ercan
+ *
+ */
+public class AdbClient {
+
+	/**
+	 * A connection to the <i>track-devices</i> service returned from 
+	 * {@link AdbClient#trackDevices()}. Each tracker has its own 
+	 * connection, closing it stops only that tracker.
+	 */
+	public static final class DeviceTracker implements Closeable {
+		private final Socket socket;
+		private final DataInputStream in;
+
+		private DeviceTracker(Socket socket, DataInputStream in){
+			this.socket = socket;
+			this.in = in;
+		}
+
+		/**
+		 * Blocks until the device list changes. The first call returns 
+		 * the current list.
+		 * 
+		 * @return complete list of devices
+		 * @throws IOException if the connection is lost or closed
+		 */
+		public List<AndroidDevice> next() throws IOException{
+			return parseDevices(readString(in));
+		}
+
+		/**
+		 * Closes the connection, a thread blocked on {@link #next()} 
+		 * gets an {@link IOException}.
+		 */
+		@Override
+		public void close(){
+			AdbClient.close(socket);
+		}
+	}
+
+	/**
+	 * Thrown when a connection to the adb server can not be established. 
+	 * Failures of a command on a server that is reachable are reported 
+	 * with other {@link IOException}s.
+	 */
+	public static class ServerNotReachableException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		ServerNotReachableException(String message, Throwable cause){
+			super(message, cause);
+		}
+	}
+
+	public static final int DEFAULT_PORT = 5037;
+	/**
+	 * Default time limit for {@link #shell(String, String)}
+	 */
+	public static final long DEFAULT_SHELL_TIMEOUT = 60 * 1000;
+	private static final String DEFAULT_HOST = "127.0.0.1";
+	private static final int CONNECT_TIMEOUT = 2000;
+	private static final int READ_TIMEOUT = 10000;
+	// how often a running shell command checks for cancellation
+	private static final int SHELL_POLL_INTERVAL = 500;
+	private static final String ENCODING = "UTF-8";
+	private static final int SYNC_DATA_MAX = 64 * 1024;
+	// regular file with rw-r--r-- permissions
+	private static final int DEFAULT_FILE_MODE = 0100644;
+
+	private final String host;
+	private final int port;
+
+	public AdbClient(){
+		this(DEFAULT_HOST, DEFAULT_PORT);
+	}
+
+	public AdbClient(String host, int port){
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * @return true if the adb server accepts connections
+	 */
+	public boolean isServerRunning(){
+		Socket socket = null;
+		try{
+			socket = connect(CONNECT_TIMEOUT);
+			return true;
+		}catch(IOException e){
+			return false;
+		}finally{
+			close(socket);
+		}
+	}
+
+	/**
+	 * Lists the devices known to the adb server. Equivalent of <i>adb devices</i>
+	 *
+	 * @return list of devices
+	 * @throws IOException
+	 */
+	public List<AndroidDevice> devices() throws IOException{
+		Socket socket = connect(READ_TIMEOUT);
+		try{
+			DataInputStream in = request(socket, "host:devices");
+			return parseDevices(readString(in));
+		}finally{
+			close(socket);
+		}
+	}
+
+	/**
+	 * Opens a connection that receives the device list every time it
+	 * changes. The caller must close the returned tracker.
+	 *
+	 * @return tracker
+	 * @throws IOException if the server can not be reached
+	 */
+	public DeviceTracker trackDevices() throws IOException{
+		Socket socket = connect(READ_TIMEOUT);
+		try{
+			DataInputStream in = request(socket, "host:track-devices");
+			// updates only arrive when the list changes
+			socket.setSoTimeout(0);
+			return new DeviceTracker(socket, in);
+		}catch(IOException e){
+			close(socket);
+			throw e;
+		}
+	}
+
+	/**
+	 * Runs a shell command on the device with the {@link #DEFAULT_SHELL_TIMEOUT}.
+	 *
+	 * @see #shell(String, String, long, IProgressMonitor)
+	 */
+	public String shell(String serialNumber, String command) throws IOException{
+		return shell(serialNumber, command, DEFAULT_SHELL_TIMEOUT, null);
+	}
+
+	/**
+	 * Runs a shell command on the device and returns its output.
+	 *
+	 * @param serialNumber
+	 * @param command
+	 * @param timeout time limit in ms for the command to complete, 0 for no limit
+	 * @param monitor checked for cancellation while the command runs, may be null
+	 * @return output of the command
+	 * @throws SocketTimeoutException if the command does not complete in time
+	 * @throws InterruptedIOException if the monitor is cancelled
+	 * @throws IOException
+	 */
+	public String shell(String serialNumber, String command, long timeout, IProgressMonitor monitor) throws IOException{
+		Socket socket = connect(READ_TIMEOUT);
+		try{
+			transport(socket, serialNumber);
+			request(socket, "shell:" + command);
+			socket.setSoTimeout(SHELL_POLL_INTERVAL);
+			InputStream in = socket.getInputStream();
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+			while(true){
+				if(monitor != null && monitor.isCanceled()){
+					throw new InterruptedIOException("adb shell " + command + " was cancelled");
+				}
+				if(deadline > 0 && System.currentTimeMillis() > deadline){
+					throw new SocketTimeoutException("adb shell " + command + " did not complete in " + timeout + " ms");
+				}
+				int read;
+				try{
+					read = in.read(buffer);
+				}catch(SocketTimeoutException e){
+					continue;
+				}
+				if(read == -1 )
+					break;
+				out.write(buffer, 0, read);
+			}
+			return out.toString(ENCODING);
+		}finally{
+			close(socket);
+		}
+	}
+
+	/**
+	 * Starts a shell command on the device and returns a stream of its
+	 * output. The stream ends when the command completes. Reads from the
+	 * stream block without a time limit, closing the stream terminates
+	 * the connection to the command.
+	 *
+	 * @param serialNumber
+	 * @param command
+	 * @return output of the command
+	 * @throws IOException
+	 */
+	public InputStream openShell(String serialNumber, String command) throws IOException{
+		Socket socket = connect(0);
+		try{
+			transport(socket, serialNumber);
+			request(socket, "shell:" + command);
+			return socket.getInputStream();
+		}catch(IOException e){
+			close(socket);
+			throw e;
+		}
+	}
+
+	/**
+	 * Streams the device log. Equivalent of <i>adb logcat filter</i>
+	 *
+	 * @param serialNumber
+	 * @param filter logcat filter specs, may be null
+	 * @return stream of log lines
+	 * @throws IOException
+	 * @see #openShell(String, String)
+	 */
+	public InputStream logcat(String serialNumber, String filter) throws IOException{
+		StringBuilder command = new StringBuilder("logcat");
+		if(filter != null && !filter.isEmpty()){
+			command.append(' ').append(filter);
+		}
+		return openShell(serialNumber, command.toString());
+	}
+
+	/**
+	 * Copies a local file to the device using the sync protocol.
+	 *
+	 * @param serialNumber
+	 * @param file local file
+	 * @param remotePath full path of the file on the device
+	 * @throws IOException
+	 */
+	public void push(String serialNumber, File file, String remotePath) throws IOException{
+		Socket socket = connect(READ_TIMEOUT);
+		InputStream fileIn = null;
+		try{
+			transport(socket, serialNumber);
+			DataInputStream in = request(socket, "sync:");
+			OutputStream out = socket.getOutputStream();
+
+			byte[] path = (remotePath + "," + DEFAULT_FILE_MODE).getBytes(ENCODING);
+			writeSyncHeader(out, "SEND", path.length);
+			out.write(path);
+
+			fileIn = new BufferedInputStream(new FileInputStream(file));
+			byte[] buffer = new byte[SYNC_DATA_MAX];
+			int read;
+			while((read = fileIn.read(buffer)) != -1){
+				writeSyncHeader(out, "DATA", read);
+				out.write(buffer, 0, read);
+			}
+			writeSyncHeader(out, "DONE", (int) (file.lastModified() / 1000));
+			out.flush();
+
+			String status = readId(in);
+			int length = readLittleEndianInt(in);
+			if("FAIL".equals(status)){
+				throw new IOException("adb push failed: " + readString(in, length));
+			}
+			if(!"OKAY".equals(status)){
+				throw new IOException("Unexpected adb sync response " + status);
+			}
+			writeSyncHeader(out, "QUIT", 0);
+			out.flush();
+		}finally{
+			if(fileIn != null ){
+				fileIn.close();
+			}
+			close(socket);
+		}
+	}
+
+	/**
+	 * Parses the device list in the format returned from <i>host:devices</i> or
+	 * printed by <i>adb devices</i>.
+	 */
+	static List<AndroidDevice> parseDevices(String text) throws IOException{
+		BufferedReader reader = new BufferedReader(new StringReader(text));
+		ArrayList<AndroidDevice> list = new ArrayList<AndroidDevice>();
+		String line = null;
+		while ((line = reader.readLine()) != null) {
+			if(line.isEmpty() || line.contains("List of devices attached"))
+				continue;
+			String[] values = line.split("\t");
+			if(values.length == 2){
+				AndroidDevice device = new AndroidDevice();
+				device.setSerialNumber(values[0].trim());
+				device.setEmulator(values[0].contains("emulator"));
+
+				if("device".equals(values[1].trim())){
+					device.setState(AndroidDevice.STATE_DEVICE);
+				}
+				else if("offline".equals(values[1].trim())){
+					device.setState(AndroidDevice.STATE_OFFLINE);
+				}
+				list.add(device);
+			}
+		}
+		return list;
+	}
+
+	private Socket connect(int readTimeout) throws IOException{
+		Socket socket = new Socket();
+		try{
+			socket.setTcpNoDelay(true);
+			socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+			socket.setSoTimeout(readTimeout);
+			return socket;
+		}catch(IOException e){
+			close(socket);
+			throw new ServerNotReachableException("Can not connect to adb server at " + host + ":" + port, e);
+		}
+	}
+
+	private void transport(Socket socket, String serialNumber) throws IOException{
+		request(socket, "host:transport:" + serialNumber);
+	}
+
+	/**
+	 * Sends a request and reads the status. Throws with the message sent by the
+	 * server if the request fails.
+	 */
+	private DataInputStream request(Socket socket, String request) throws IOException{
+		byte[] payload = request.getBytes(ENCODING);
+		OutputStream out = socket.getOutputStream();
+		out.write(String.format("%04x", Integer.valueOf(payload.length)).getBytes(ENCODING));
+		out.write(payload);
+		out.flush();
+		DataInputStream in = new DataInputStream(socket.getInputStream());
+		String status = readId(in);
+		if("OKAY".equals(status))
+			return in;
+		if("FAIL".equals(status)){
+			throw new IOException("adb " + request + " failed: " + readString(in));
+		}
+		throw new IOException("Unexpected adb response " + status);
+	}
+
+	private static String readId(DataInputStream in) throws IOException{
+		byte[] id = new byte[4];
+		in.readFully(id);
+		return new String(id, ENCODING);
+	}
+
+	/**
+	 * Reads a string prefixed with its length in 4 hex digits
+	 */
+	private static String readString(DataInputStream in) throws IOException{
+		String hex = readId(in);
+		int length;
+		try{
+			length = Integer.parseInt(hex, 16);
+		}catch(NumberFormatException e){
+			throw new IOException("Invalid adb message length " + hex);
+		}
+		return readString(in, length);
+	}
+
+	private static String readString(DataInputStream in, int length) throws IOException{
+		if(length < 0 )
+			throw new EOFException();
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, ENCODING);
+	}
+
+	private static void writeSyncHeader(OutputStream out, String id, int value) throws IOException{
+		byte[] header = new byte[8];
+		byte[] idBytes = id.getBytes(ENCODING);
+		System.arraycopy(idBytes, 0, header, 0, 4);
+		header[4] = (byte) value;
+		header[5] = (byte) (value >> 8);
+		header[6] = (byte) (value >> 16);
+		header[7] = (byte) (value >> 24);
+		out.write(header);
+	}
+
+	private static int readLittleEndianInt(DataInputStream in) throws IOException{
+		byte[] bytes = new byte[4];
+		in.readFully(bytes);
+		return (bytes[0] & 0xff) | (bytes[1] & 0xff) << 8 | (bytes[2] & 0xff) << 16 | (bytes[3] & 0xff) << 24;
+	}
+
+	private static void close(Socket socket){
+		if(socket == null )
+			return;
+		try {
+			socket.close();
+		} catch (IOException e) {
+			//ignored
+		}
+	}
+}
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.android.core.adt;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jboss.tools.aerogear.hybrid.android.core.adt.AdbClient.DeviceTracker;
+import org.jboss.tools.aerogear.hybrid.core.HybridCore;
+
+/**
+ * Keeps a live table of the devices connected to the adb server. The table
+ * is updated by the <i>track-devices</i> service of the adb server, so
+ * it can be queried without talking to adb. If the adb server is not
+ * running, the monitor keeps trying to connect until it is stopped.
+ *
+ * @author Gorkem Ercan
+ *
+ */
+public class AndroidDeviceMonitor {
+
+	/**
+	 * Selects the devices a {@link Future} returned from
+	 * {@link AndroidDeviceMonitor#waitForDevice(DeviceMatcher)} waits for.
+	 */
+	public interface DeviceMatcher {
+		boolean matches(AndroidDevice device);
+	}
+
+	private static final long RECONNECT_DELAY = 1000;
+
+	private static final AndroidDeviceMonitor instance = new AndroidDeviceMonitor();
+
+	private final ConcurrentMap<String, AndroidDevice> devices = new ConcurrentHashMap<String, AndroidDevice>();
+	private final List<DeviceFuture> pending = new CopyOnWriteArrayList<DeviceFuture>();
+	private final AdbClient adb = new AdbClient();
+	private volatile boolean tracking;
+	private volatile Thread thread;
+	// connection of the current thread, guarded by this
+	private DeviceTracker tracker;
+
+	private AndroidDeviceMonitor(){
+		//singleton
+	}
+
+	public static AndroidDeviceMonitor getInstance(){
+		return instance;
+	}
+
+	/**
+	 * Starts tracking the devices if it is not already started.
+	 */
+	public synchronized void start(){
+		if(thread != null )
+			return;
+		thread = new Thread("Android device monitor"){
+			@Override
+			public void run() {
+				track(this);
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops tracking and clears the device table.
+	 */
+	public synchronized void stop(){
+		Thread t = thread;
+		thread = null;
+		if(t == null )
+			return;
+		if(tracker != null ){
+			tracker.close();
+			tracker = null;
+		}
+		t.interrupt();
+		tracking = false;
+		devices.clear();
+	}
+
+	/**
+	 * @return true if the device table is in sync with the adb server
+	 */
+	public boolean isTracking(){
+		return tracking;
+	}
+
+	/**
+	 * @return the devices currently connected
+	 */
+	public List<AndroidDevice> getDevices(){
+		return new ArrayList<AndroidDevice>(devices.values());
+	}
+
+	/**
+	 * @param serialNumber
+	 * @return the device with the serial number or null
+	 */
+	public AndroidDevice getDevice(String serialNumber){
+		return devices.get(serialNumber);
+	}
+
+	/**
+	 * @return an emulator that is online or null
+	 */
+	public AndroidDevice getOnlineEmulator(){
+		for (AndroidDevice device : devices.values()) {
+			if(isOnlineEmulator(device))
+				return device;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a future that completes with the first device that matches.
+	 * If a connected device already matches, the future is completed on return.
+	 * Cancelling the future stops waiting.
+	 *
+	 * @param matcher
+	 * @return future for the device
+	 */
+	public Future<AndroidDevice> waitForDevice(DeviceMatcher matcher){
+		DeviceFuture future = new DeviceFuture(matcher);
+		pending.add(future);
+		for (AndroidDevice device : devices.values()) {
+			if(future.offer(device)){
+				break;
+			}
+		}
+		if(future.isDone()){
+			pending.remove(future);
+		}
+		return future;
+	}
+
+	/**
+	 * @return future that completes when an emulator comes online
+	 */
+	public Future<AndroidDevice> waitForOnlineEmulator(){
+		return waitForDevice(new DeviceMatcher() {
+			@Override
+			public boolean matches(AndroidDevice device) {
+				return isOnlineEmulator(device);
+			}
+		});
+	}
+
+	/**
+	 * Called when new information is available from the adb server or the
+	 * device list is polled.
+	 *
+	 * @param list complete list of devices
+	 */
+	void update(List<AndroidDevice> list){
+		Set<String> serials = new HashSet<String>();
+		for (AndroidDevice device : list) {
+			serials.add(device.getSerialNumber());
+			devices.put(device.getSerialNumber(), device);
+		}
+		devices.keySet().retainAll(serials);
+		for (DeviceFuture future : pending) {
+			for (AndroidDevice device : list) {
+				if(future.offer(device))
+					break;
+			}
+			if(future.isDone()){
+				pending.remove(future);
+			}
+		}
+	}
+
+	private void track(Thread self){
+		while(thread == self){
+			try{
+				trackDevices(self);
+			}catch(IOException e){
+				if(thread == self ){
+					HybridCore.trace("Android device monitor is not connected to adb: " + e.getMessage());
+				}
+			}
+			synchronized (this) {
+				if(thread == self ){
+					tracking = false;
+				}
+			}
+			try {
+				Thread.sleep(RECONNECT_DELAY);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Applies the updates of one connection until it is lost or the 
+	 * thread is no longer the current one. Updates are applied while 
+	 * holding the lock so that {@link #stop()} can not interleave.
+	 */
+	private void trackDevices(Thread self) throws IOException{
+		DeviceTracker current = adb.trackDevices();
+		synchronized (this) {
+			if(thread != self ){
+				current.close();
+				return;
+			}
+			tracker = current;
+		}
+		try{
+			while(true){
+				List<AndroidDevice> list = current.next();
+				synchronized (this) {
+					if(thread != self )
+						return;
+					update(list);
+					tracking = true;
+				}
+			}
+		}finally{
+			synchronized (this) {
+				if(tracker == current ){
+					tracker = null;
+				}
+			}
+			current.close();
+		}
+	}
+
+	private static boolean isOnlineEmulator(AndroidDevice device){
+		return device.isEmulator() && device.getState() == AndroidDevice.STATE_DEVICE;
+	}
+
+	private class DeviceFuture implements Future<AndroidDevice>{
+		private final DeviceMatcher matcher;
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile AndroidDevice device;
+		private volatile boolean cancelled;
+
+		DeviceFuture(DeviceMatcher matcher){
+			this.matcher = matcher;
+		}
+
+		synchronized boolean offer(AndroidDevice candidate){
+			if(isDone())
+				return true;
+			if(!matcher.matches(candidate))
+				return false;
+			device = candidate;
+			latch.countDown();
+			return true;
+		}
+
+		@Override
+		public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+			if(isDone())
+				return false;
+			cancelled = true;
+			latch.countDown();
+			pending.remove(this);
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public boolean isDone() {
+			return latch.getCount() == 0;
+		}
+
+		@Override
+		public AndroidDevice get() throws InterruptedException, ExecutionException {
+			latch.await();
+			return result();
+		}
+
+		@Override
+		public AndroidDevice get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+				TimeoutException {
+			if(!latch.await(timeout, unit))
+				throw new TimeoutException();
+			return result();
+		}
+
+		private AndroidDevice result(){
+			if(cancelled)
+				throw new CancellationException();
+			return device;
+		}
+	}
+}
@@ -26,10 +26,12 @@ import org.eclipse.debug.core.model.ILaunchConfigurationDelegate2;
 import org.jboss.tools.aerogear.hybrid.android.core.AndroidCore;
 import org.jboss.tools.aerogear.hybrid.core.HybridProject;
 import org.jboss.tools.aerogear.hybrid.core.HybridProjectLaunchConfigConstants;
-import org.jboss.tools.aerogear.hybrid.core.config.Widget;
 
 public class AndroidLaunchDelegate implements ILaunchConfigurationDelegate2 {
 
+	// Emulators without hardware acceleration can take minutes to boot
+	private static final long EMULATOR_START_TIMEOUT = 10 * 60 * 1000;
+	
 	private File buildDir;
 	private AndroidDevice device;
 	
@@ -39,13 +41,12 @@ public class AndroidLaunchDelegate implements ILaunchConfigurationDelegate2 {
 		AndroidSDKManager sdk = new AndroidSDKManager();
 	
 		HybridProject project = HybridProject.getHybridProject(getProject(configuration));
-		Widget widget = project.getWidget();
-		String packageName = widget.getId();
+		String packageName = project.getAppId();
 		String name = project.getBuildArtifactAppName();
 
-		sdk.installApk(new File(buildDir,name+"-debug.apk" ), device.getSerialNumber());
+		sdk.installApk(new File(buildDir,name+"-debug.apk" ), device.getSerialNumber(), monitor);
 		
-		sdk.startApp(packageName+"/."+name, device.getSerialNumber());
+		sdk.startApp(packageName+"/."+name, device.getSerialNumber(), monitor);
 		String logcatFilter = configuration.getAttribute(AndroidLaunchConstants.ATTR_LOGCAT_FILTER, "");
 		sdk.logcat(logcatFilter,null,null, device.getSerialNumber());
 		
@@ -128,14 +129,19 @@ public class AndroidLaunchDelegate implements ILaunchConfigurationDelegate2 {
 			//start the emulator.
 			sdk.startEmulator(avdName);
 			// wait for it to come online 
-			sdk.waitForEmulator();
+			this.device = sdk.waitForEmulator(EMULATOR_START_TIMEOUT, monitor);
+		}else{
+			this.device = emulator;
 		}
-		this.device = getEmulator();
 		monitor.done();
 		return true;
 	}
 	
 	private AndroidDevice getEmulator() throws CoreException{
+		AndroidDeviceMonitor deviceMonitor = AndroidDeviceMonitor.getInstance();
+		if(deviceMonitor.isTracking()){
+			return deviceMonitor.getOnlineEmulator();
+		}
 		AndroidSDKManager sdk = new AndroidSDKManager();
 		List<AndroidDevice> devices = sdk.listDevices();
 		if(devices == null ) 
@@ -18,7 +18,10 @@ import static org.jboss.tools.aerogear.hybrid.android.core.AndroidConstants.DIR_
 import static org.jboss.tools.aerogear.hybrid.android.core.AndroidConstants.DIR_VALUES;
 import static org.jboss.tools.aerogear.hybrid.android.core.AndroidConstants.DIR_XML;
 import static org.jboss.tools.aerogear.hybrid.android.core.AndroidConstants.FILE_JAR_CORDOVA;
+import static org.jboss.tools.aerogear.hybrid.android.core.AndroidConstants.FILE_PROPERTIES_LOCAL;
+import static org.jboss.tools.aerogear.hybrid.android.core.AndroidConstants.FILE_PROPERTIES_PROJECT;
 import static org.jboss.tools.aerogear.hybrid.android.core.AndroidConstants.FILE_XML_ANDROIDMANIFEST;
+import static org.jboss.tools.aerogear.hybrid.android.core.AndroidConstants.FILE_XML_BUILD;
 import static org.jboss.tools.aerogear.hybrid.android.core.AndroidConstants.FILE_XML_STRINGS;
 import static org.jboss.tools.aerogear.hybrid.core.util.FileUtils.directoryCopy;
 import static org.jboss.tools.aerogear.hybrid.core.util.FileUtils.fileCopy;
@@ -32,37 +35,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.jboss.tools.aerogear.hybrid.android.core.AndroidCore;
-import org.jboss.tools.aerogear.hybrid.core.HybridCore;
 import org.jboss.tools.aerogear.hybrid.core.HybridProject;
-import org.jboss.tools.aerogear.hybrid.core.config.Widget;
 import org.jboss.tools.aerogear.hybrid.core.platform.AbstractPlatformProjectGenerator;
 import org.jboss.tools.aerogear.hybrid.core.platform.PlatformConstants;
 import org.osgi.framework.Bundle;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.xml.sax.SAXException;
 
 public class AndroidProjectGenerator extends AbstractPlatformProjectGenerator{
 
@@ -80,49 +62,74 @@ public class AndroidProjectGenerator extends AbstractPlatformProjectGenerator{
 		if(hybridProject == null ){
 			throw new CoreException(new Status(IStatus.ERROR, AndroidCore.PLUGIN_ID, "Not a hybrid mobile project, can not generate files"));
 		}
-		Widget widgetModel = hybridProject.getWidget();
-		
 		// Create the basic android project
-		String packageName = widgetModel.getId();
+		String packageName = hybridProject.getAppId();
 		String name = hybridProject.getBuildArtifactAppName();
 
 		List<AndroidSDK> targets = sdkManager.listTargets();
 		if(targets == null || targets.isEmpty() ){
 			throw new CoreException(new Status(IStatus.ERROR, AndroidCore.PLUGIN_ID, "No Android targets were found, Please create a target"));
 		}
+		AndroidSDK target = targets.get(0);
+		File destination = getDestination();
+		File sdkRoot = AndroidSDKInventory.getInstance().getSDKRoot();
 		
-		sdkManager.createProject(targets.get(0), name, getDestination(),name, packageName );
-		
-		//Move cordova library to libs
 		try{
+			Map<String, String> values = new HashMap<String, String>();
+			values.put("__ID__", packageName);
+			values.put("__PACKAGE__", packageName);// yeap, cordova also uses two different names
+			values.put("__ACTIVITY__", name);
+			values.put("__APILEVEL__", Integer.toString(target.getApiLevel()));
+			values.put("__NAME__", name);
+			values.put("__APPNAME__", escapeXml(hybridProject.getAppName()));
+			
+			if(sdkRoot == null ){
+				// SDK location is unknown, let the android tool create the project
+				sdkManager.createProject(target, name, destination, name, packageName );
+			}else{
+				// Create the basic android project from templates
+				AndroidSDKManager.validateProject(name, name, packageName);
+				values.put("__TARGET__", target.getId());
+				values.put("__SDKDIR__", escapeProperty(sdkRoot.getPath()));
+				if(!destination.exists() && !destination.mkdirs()){
+					throw new IOException("Can not create directory " + destination.getPath());
+				}
+				templatedFileCopy(getTemplateFile("/templates/project/build.xml"), 
+						toURL(new File(destination, FILE_XML_BUILD)), values);
+				templatedFileCopy(getTemplateFile("/templates/project/project.properties"), 
+						toURL(new File(destination, FILE_PROPERTIES_PROJECT)), values);
+				templatedFileCopy(getTemplateFile("/templates/project/local.properties"), 
+						toURL(new File(destination, FILE_PROPERTIES_LOCAL)), values);
+			}
+			
+			//Move cordova library to libs
+			File libs = new File(destination, DIR_LIBS);
+			libs.mkdirs();
 			fileCopy(getTemplateFile("/templates/CordovaLib/cordova-2.5.0.jar"), 
-					toURL(new File(getDestination(), DIR_LIBS + File.separator + FILE_JAR_CORDOVA )));
+					toURL(new File(libs, FILE_JAR_CORDOVA )));
 			directoryCopy(getTemplateFile("/templates/project/res/"),
-					toURL(new File(getDestination(), DIR_RES )));
+					toURL(new File(destination, DIR_RES )));
 			
 			IFile configFile = getProject().getFile(PlatformConstants.DIR_WWW+"/config.xml");
-			File xmldir = new File(getDestination(),DIR_RES+File.separator+DIR_XML+File.separator);
+			File xmldir = new File(destination,DIR_RES+File.separator+DIR_XML+File.separator);
 			if( !xmldir.exists() ){//only config.xml uses xml 
 				xmldir.mkdirs();   //directory make sure it is created
 			}
 			fileCopy(toURL(configFile.getLocation().toFile()), 
 					toURL(new File(xmldir, PlatformConstants.FILE_XML_CONFIG)));
 			
-			updateAppName(hybridProject.getAppName());
-			
 			// Copy templated files 
-			Map<String, String> values = new HashMap<String, String>();
-			values.put("__ID__", packageName);
-			values.put("__PACKAGE__", packageName);// yeap, cordova also uses two different names
-			values.put("__ACTIVITY__", name);
-			values.put("__APILEVEL__", Integer.toString(targets.get(0).getApiLevel()));
+			File valuesDir = new File(destination, DIR_RES+File.separator+DIR_VALUES);
+			valuesDir.mkdirs();
+			templatedFileCopy(getTemplateFile("/templates/project/strings.xml"), 
+					toURL(new File(valuesDir, FILE_XML_STRINGS)), values);
 			
+			File activityDir = new File(destination, DIR_SRC+ File.separator+ packageName.replace('.', File.separatorChar));
+			activityDir.mkdirs();
 			templatedFileCopy(getTemplateFile("/templates/project/Activity.java"), 
-					toURL(new File(getDestination(), File.separator+DIR_SRC+ File.separator+ 
-							packageName.replace('.', File.separatorChar)+File.separator+name+".java")),
-					values);
+					toURL(new File(activityDir, name+".java")), values);
 			templatedFileCopy(getTemplateFile("/templates/project/AndroidManifest.xml"), 
-					toURL(new File(getDestination(), FILE_XML_ANDROIDMANIFEST)), values);
+					toURL(new File(destination, FILE_XML_ANDROIDMANIFEST)), values);
 			
 			}
 		catch(IOException e)
@@ -131,55 +138,24 @@ public class AndroidProjectGenerator extends AbstractPlatformProjectGenerator{
 		}
 	}
 	
-	private void updateAppName( String appName ) throws CoreException{
-	    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-	    dbf.setNamespaceAware(true);
-	    DocumentBuilder db;
-
-	    try{
-	    	db = dbf.newDocumentBuilder();
-	    	File strings = new File(getDestination(),DIR_RES+File.separator+DIR_VALUES+File.separator+ FILE_XML_STRINGS);
-	    	Document configDocument = db.parse( strings); 
-	    	XPath xpath = XPathFactory.newInstance().newXPath();
-	    	
-	    	try {
-	    		XPathExpression expr = xpath.compile("//string[@name=\"app_name\"]");
-				Node node = (Node) expr.evaluate( configDocument, XPathConstants.NODE);
-				node.setTextContent(appName);
-				
-			    configDocument.setXmlStandalone(true);
-			    
-			    Source source = new DOMSource(configDocument);
-
-			   
-			    StreamResult result = new StreamResult(strings);
-
-			    // Write the DOM document to the file
-			    TransformerFactory transformerFactory = TransformerFactory
-				    .newInstance();
-			    Transformer xformer = transformerFactory.newTransformer();
-
-			    xformer.transform(source, result);
-				
-			} catch (XPathExpressionException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (TransformerConfigurationException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (TransformerException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+	private static String escapeXml(String value){
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '<': escaped.append("&lt;"); break;
+			case '>': escaped.append("&gt;"); break;
+			case '&': escaped.append("&amp;"); break;
+			case '"': escaped.append("&quot;"); break;
+			case '\'': escaped.append("\\'"); break;// android resource strings need the apostrophe escaped
+			default: escaped.append(c);
 			}
-	    	
-	    }
-		catch (ParserConfigurationException e) {
-			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Parser error when parsing /res/values/strings.xml", e));
-		} catch (SAXException e) {
-			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Parsing error on /res/values/strings.xml", e));
-		} catch (IOException e) {
-			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "IO error when parsing /res/values/strings.xml", e));
-		} 
+		}
+		return escaped.toString();
+	}
+	
+	private static String escapeProperty(String value){
+		return value.replace("\\", "\\\\").replace(":", "\\:");
 	}
 
 	@Override
@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.android.core.adt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.core.runtime.IStatus;
+import org.jboss.tools.aerogear.hybrid.android.core.AndroidCore;
+import org.jboss.tools.aerogear.hybrid.core.HybridCore;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Caches the Android targets and AVDs, which are slow to list with the
+ * android tool. The cached targets are valid as long as the <i>platforms</i>
+ * and <i>add-ons</i> directories of the SDK do not change, the AVDs as
+ * long as the AVD directory does not change. The cache is persisted on the
+ * bundle data area so that it survives restarts.
+ *
+ * @author Gorkem Ercan
+ *
+ */
+public class AndroidSDKInventory {
+
+	private static final String INVENTORY_FILE = "sdk_inventory.properties";
+	private static final String KEY_TARGETS_STAMP = "targets.stamp";
+	private static final String KEY_TARGETS_COUNT = "targets.count";
+	private static final String KEY_TARGET = "target.";
+	private static final String KEY_AVDS_STAMP = "avds.stamp";
+	private static final String KEY_AVDS_COUNT = "avds.count";
+	private static final String KEY_AVD = "avd.";
+
+	private static final AndroidSDKInventory instance = new AndroidSDKInventory();
+
+	private Properties store;
+	private File sdkRoot;
+	private boolean sdkRootSearched;
+
+	private AndroidSDKInventory(){
+		//singleton
+	}
+
+	public static AndroidSDKInventory getInstance(){
+		return instance;
+	}
+
+	/**
+	 * Returns the location of the Android SDK. Uses the ANDROID_HOME
+	 * environment variable if it is set, otherwise looks for the android tool on
+	 * the PATH.
+	 *
+	 * @return SDK directory or null if it can not be found
+	 */
+	public synchronized File getSDKRoot(){
+		if(!sdkRootSearched){
+			sdkRoot = findSDKRoot();
+			sdkRootSearched = true;
+		}
+		return sdkRoot;
+	}
+
+	/**
+	 * @return stamp for the current state of the targets, null if it can not
+	 * be determined.
+	 */
+	public String getTargetsStamp(){
+		File root = getSDKRoot();
+		if(root == null )
+			return null;
+		return stamp(new File(root, "platforms"), new File(root, "add-ons"));
+	}
+
+	/**
+	 * @return stamp for the current state of the AVDs, null if it can not
+	 * be determined.
+	 */
+	public String getAVDsStamp(){
+		String androidHome = System.getenv("ANDROID_SDK_HOME");
+		if(androidHome == null ){
+			androidHome = System.getProperty("user.home");
+		}
+		if(androidHome == null )
+			return null;
+		return stamp(new File(androidHome, ".android/avd"));
+	}
+
+	/**
+	 * Returns the cached targets if they are still valid.
+	 *
+	 * @return targets or null
+	 */
+	public synchronized List<AndroidSDK> getTargets(){
+		Properties props = getStore();
+		String stamp = getTargetsStamp();
+		if(stamp == null || !stamp.equals(props.getProperty(KEY_TARGETS_STAMP)))
+			return null;
+		int count = getCount(props, KEY_TARGETS_COUNT);
+		if(count < 0 )
+			return null;
+		List<AndroidSDK> targets = new ArrayList<AndroidSDK>(count);
+		for (int i = 0; i < count; i++) {
+			String prefix = KEY_TARGET + i;
+			AndroidSDK sdk = new AndroidSDK();
+			sdk.setId(props.getProperty(prefix + ".id"));
+			sdk.setType(props.getProperty(prefix + ".type"));
+			try{
+				sdk.setApiLevel(Integer.parseInt(props.getProperty(prefix + ".apiLevel", "0")));
+			}catch(NumberFormatException e){
+				return null;
+			}
+			if(sdk.getId() == null )
+				return null;
+			targets.add(sdk);
+		}
+		return targets;
+	}
+
+	/**
+	 * Caches the targets.
+	 *
+	 * @param targets
+	 * @param stamp the value of {@link #getTargetsStamp()} before the targets were listed.
+	 */
+	public synchronized void setTargets(List<AndroidSDK> targets, String stamp){
+		Properties props = getStore();
+		removeEntries(props, KEY_TARGET);
+		props.remove(KEY_TARGETS_COUNT);
+		props.remove(KEY_TARGETS_STAMP);
+		if(targets != null && stamp != null ){
+			for (int i = 0; i < targets.size(); i++) {
+				AndroidSDK sdk = targets.get(i);
+				String prefix = KEY_TARGET + i;
+				props.setProperty(prefix + ".id", sdk.getId());
+				if(sdk.getType() != null ){
+					props.setProperty(prefix + ".type", sdk.getType());
+				}
+				props.setProperty(prefix + ".apiLevel", Integer.toString(sdk.getApiLevel()));
+			}
+			props.setProperty(KEY_TARGETS_COUNT, Integer.toString(targets.size()));
+			props.setProperty(KEY_TARGETS_STAMP, stamp);
+		}
+		save();
+	}
+
+	/**
+	 * Returns the cached AVD names if they are still valid.
+	 *
+	 * @return AVD names or null
+	 */
+	public synchronized List<String> getAVDs(){
+		Properties props = getStore();
+		String stamp = getAVDsStamp();
+		if(stamp == null || !stamp.equals(props.getProperty(KEY_AVDS_STAMP)))
+			return null;
+		int count = getCount(props, KEY_AVDS_COUNT);
+		if(count < 0 )
+			return null;
+		List<String> avds = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			String name = props.getProperty(KEY_AVD + i);
+			if(name == null )
+				return null;
+			avds.add(name);
+		}
+		return avds;
+	}
+
+	/**
+	 * Caches the AVD names.
+	 *
+	 * @param avds
+	 * @param stamp the value of {@link #getAVDsStamp()} before the AVDs were listed.
+	 */
+	public synchronized void setAVDs(List<String> avds, String stamp){
+		Properties props = getStore();
+		removeEntries(props, KEY_AVD);
+		props.remove(KEY_AVDS_COUNT);
+		props.remove(KEY_AVDS_STAMP);
+		if(avds != null && stamp != null ){
+			for (int i = 0; i < avds.size(); i++) {
+				props.setProperty(KEY_AVD + i, avds.get(i));
+			}
+			props.setProperty(KEY_AVDS_COUNT, Integer.toString(avds.size()));
+			props.setProperty(KEY_AVDS_STAMP, stamp);
+		}
+		save();
+	}
+
+	/**
+	 * Discards all the cached information.
+	 */
+	public synchronized void invalidate(){
+		getStore().clear();
+		sdkRootSearched = false;
+		save();
+	}
+
+	private static String stamp(File... dirs){
+		StringBuilder stamp = new StringBuilder();
+		for (File dir : dirs) {
+			if(stamp.length() > 0 )
+				stamp.append(';');
+			stamp.append(dir.getPath()).append('@').append(dir.lastModified());
+		}
+		return stamp.toString();
+	}
+
+	private static int getCount(Properties props, String key){
+		try{
+			return Integer.parseInt(props.getProperty(key, "-1"));
+		}catch(NumberFormatException e){
+			return -1;
+		}
+	}
+
+	private static void removeEntries(Properties props, String prefix){
+		List<Object> keys = new ArrayList<Object>();
+		for (Object key : props.keySet()) {
+			if(((String)key).startsWith(prefix)){
+				keys.add(key);
+			}
+		}
+		for (Object key : keys) {
+			props.remove(key);
+		}
+	}
+
+	private static File findSDKRoot(){
+		String home = System.getenv("ANDROID_HOME");
+		if(home != null && new File(home).isDirectory()){
+			return new File(home);
+		}
+		String path = System.getenv("PATH");
+		if(path == null )
+			return null;
+		for (String dir : path.split(File.pathSeparator)) {
+			File tools = new File(dir);
+			if(new File(tools, "android").isFile() || new File(tools, "android.bat").isFile()){
+				File root = tools.getAbsoluteFile().getParentFile();
+				if(root != null && new File(root, "platforms").isDirectory()){
+					return root;
+				}
+			}
+		}
+		return null;
+	}
+
+	private Properties getStore(){
+		if(store != null )
+			return store;
+		store = new Properties();
+		File file = getStoreFile();
+		if(file == null || !file.isFile())
+			return store;
+		InputStream in = null;
+		try{
+			in = new BufferedInputStream(new FileInputStream(file));
+			store.load(in);
+		}catch(IOException e){
+			store.clear();
+		}finally{
+			if(in != null ){
+				try {
+					in.close();
+				} catch (IOException e) {
+					//ignored
+				}
+			}
+		}
+		return store;
+	}
+
+	private void save(){
+		File file = getStoreFile();
+		if(file == null )
+			return;
+		OutputStream out = null;
+		try{
+			out = new BufferedOutputStream(new FileOutputStream(file));
+			store.store(out, "Android SDK inventory");
+		}catch(IOException e){
+			HybridCore.log(IStatus.WARNING, "Unable to save the Android SDK inventory", e);
+		}finally{
+			if(out != null ){
+				try {
+					out.close();
+				} catch (IOException e) {
+					//ignored
+				}
+			}
+		}
+	}
+
+	private File getStoreFile(){
+		BundleContext context = AndroidCore.getContext();
+		if(context == null )
+			return null;
+		return context.getDataFile(INVENTORY_FILE);
+	}
+}
@@ -13,14 +13,21 @@ package org.jboss.tools.aerogear.hybrid.android.core.adt;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.ant.launching.IAntLaunchConstants;
 import org.eclipse.core.externaltools.internal.IExternalToolConstants;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
@@ -33,9 +40,12 @@ import org.eclipse.debug.core.IStreamListener;
 import org.eclipse.debug.core.model.IStreamMonitor;
 import org.jboss.tools.aerogear.hybrid.android.core.AndroidConstants;
 import org.jboss.tools.aerogear.hybrid.android.core.AndroidCore;
+import org.jboss.tools.aerogear.hybrid.core.HybridCore;
 import org.jboss.tools.aerogear.hybrid.core.HybridProjectConventions;
 import org.jboss.tools.aerogear.hybrid.core.util.ExternalProcessUtility;
-import org.jboss.tools.aerogear.hybrid.core.util.TextDetectingStreamListener;
+import org.jboss.tools.aerogear.hybrid.core.util.MultiPatternMatcher;
+import org.jboss.tools.aerogear.hybrid.core.util.ProcessResult;
+import org.jboss.tools.aerogear.hybrid.core.util.StreamingTextMatcher;
 
 /**
  * Wrapper around the Android CommandLine tools.
@@ -59,38 +69,13 @@ public class AndroidSDKManager {
 
 			if (buffer == null || buffer.length() < 1)
 				return null;
-
-			StringReader reader = new StringReader(buffer.toString());
-			BufferedReader read = new BufferedReader(reader);
-			String line =null;
-			ArrayList<AndroidDevice> list = new ArrayList<AndroidDevice>();
 			try{
-				while ((line = read.readLine()) != null) {
-					if(line.isEmpty() || line.contains("List of devices attached"))
-						continue;
-					String[] values = line.split("\t");
-					if(values.length == 2){
-						AndroidDevice device = new AndroidDevice();
-						device.setSerialNumber(values[0].trim());
-						device.setEmulator(values[0].contains("emulator"));
-						
-						if("device".equals(values[1].trim())){
-							device.setState(AndroidDevice.STATE_DEVICE);
-						}
-						else if("offline".equals(values[1].trim())){
-							device.setState(AndroidDevice.STATE_OFFLINE);
-						}
-						list.add(device);
-					}
-					
-				}
+				return AdbClient.parseDevices(buffer.toString());
 			}
 			catch (IOException e) {
 				e.printStackTrace();
 				return null;
 			}
-			return list;
-		
 		}
 		
 		
@@ -180,8 +165,58 @@ public class AndroidSDKManager {
 		
 	}
 	
-	public void createProject(AndroidSDK target, String projectName, 
-			File path, String activity, String packageName) throws CoreException{
+	private static final String REMOTE_TEMP_DIR = "/data/local/tmp/";
+	private static final long EMULATOR_WAIT_INTERVAL = 500;
+	// large APKs on emulators without hardware acceleration install slowly
+	private static final long INSTALL_TIMEOUT = 5 * 60 * 1000;
+	private static final long START_TIMEOUT = 30 * 1000;
+	private static final long REMOVE_TIMEOUT = 10 * 1000;
+	// status lines only, the pkg: line that precedes them may contain the words
+	private static final MultiPatternMatcher INSTALL_PATTERNS = new MultiPatternMatcher("\nSuccess", "\nFailure");
+	private final AdbClient adb = new AdbClient();
+	
+	/**
+	 * Passes the logcat output read from the adb server to a stream listener
+	 */
+	private static class LogcatReader extends Thread{
+		private final InputStream log;
+		private final IStreamListener listener;
+		
+		LogcatReader(InputStream log, IStreamListener listener){
+			super("Android logcat reader");
+			setDaemon(true);
+			this.log = log;
+			this.listener = listener;
+		}
+		
+		@Override
+		public void run() {
+			InputStreamReader reader = null;
+			try{
+				reader = new InputStreamReader(log, "UTF-8");
+				char[] buffer = new char[4096];
+				int read;
+				while((read = reader.read(buffer)) != -1 ){
+					listener.streamAppended(new String(buffer, 0, read), null);
+				}
+			}catch(IOException e){
+				// connection is closed
+			}finally{
+				try {
+					log.close();
+				} catch (IOException e) {
+					//ignored
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Checks the values used for creating an Android project.
+	 * 
+	 * @throws CoreException if any of the values is not valid
+	 */
+	static void validateProject(String projectName, String activity, String packageName) throws CoreException{
 		IStatus status = HybridProjectConventions.validateProjectName(projectName);
 		if(!status.isOK())
 			throw new CoreException(status);
@@ -193,6 +228,11 @@ public class AndroidSDKManager {
 		status = HybridProjectConventions.validateProjectID(packageName);
 		if(!status.isOK())
 			throw new CoreException(status);
+	}
+	
+	public void createProject(AndroidSDK target, String projectName, 
+			File path, String activity, String packageName) throws CoreException{
+		validateProject(projectName, activity, packageName);
 	
 		ExternalProcessUtility processUtility = new ExternalProcessUtility();
 		StringBuilder command = new StringBuilder();
@@ -212,83 +252,260 @@ public class AndroidSDKManager {
 
 	}
 	
+	/**
+	 * Lists the AVD names. Results are cached on the {@link AndroidSDKInventory}
+	 * until the AVD directory changes.
+	 * 
+	 * @return AVD names
+	 * @throws CoreException
+	 */
 	public List<String> listAVDs() throws CoreException{
+		AndroidSDKInventory inventory = AndroidSDKInventory.getInstance();
+		List<String> avds = inventory.getAVDs();
+		if(avds != null )
+			return avds;
+		String stamp = inventory.getAVDsStamp();
 		ExternalProcessUtility processUtility = new ExternalProcessUtility();
 		AVDListParser parser = new AVDListParser();
-		processUtility.execSync("android list avd", null, parser, parser, 
-				new NullProgressMonitor(), null, null);
-		return parser.getAVDList();
+		ProcessResult result = processUtility.execQuery("android list avd", null, null);
+		parser.streamAppended(result.getOutput(), null);
+		avds = parser.getAVDList();
+		if(result.isOK()){
+			inventory.setAVDs(avds, stamp);
+		}
+		return avds;
 	}
 	
+	/**
+	 * Lists the Android targets. Results are cached on the {@link AndroidSDKInventory}
+	 * until the platforms or add-ons on the SDK change.
+	 * 
+	 * @return targets
+	 * @throws CoreException
+	 */
 	public List<AndroidSDK> listTargets() throws CoreException{
+		AndroidSDKInventory inventory = AndroidSDKInventory.getInstance();
+		List<AndroidSDK> targets = inventory.getTargets();
+		if(targets != null )
+			return targets;
+		String stamp = inventory.getTargetsStamp();
 		ExternalProcessUtility processUtility = new ExternalProcessUtility();
 		TargetListParser parser = new TargetListParser();
-		processUtility.execSync("android list target", 
-				null, parser, parser, new NullProgressMonitor(), null, null);
-		return parser.getSDKList();
+		ProcessResult result = processUtility.execQuery("android list target", null, null);
+		parser.streamAppended(result.getOutput(), null);
+		targets = parser.getSDKList();
+		if(result.isOK()){
+			inventory.setTargets(targets, stamp);
+		}
+		return targets;
 	}
 	
 	public List<AndroidDevice> listDevices() throws CoreException{
+		AndroidDeviceMonitor deviceMonitor = AndroidDeviceMonitor.getInstance();
+		deviceMonitor.start();
+		if(deviceMonitor.isTracking()){
+			return deviceMonitor.getDevices();
+		}
+		try{
+			return adb.devices();
+		}catch(IOException e){
+			// adb server is not running, adb command starts it 
+			HybridCore.trace("adb server is not reachable, running adb devices: " + e.getMessage());
+		}
 		ExternalProcessUtility processUtility = new ExternalProcessUtility();
 		DeviceListParser parser = new DeviceListParser();
-		processUtility.execSync("adb devices", null, parser, parser, 
-				new NullProgressMonitor(), null, null);
+		ProcessResult result = processUtility.execQuery("adb devices", null, null);
+		parser.streamAppended(result.getOutput(), null);
 		return parser.getDeviceList();
 		
 	}
 	
 	
 	public void installApk(File apkFile, String serialNumber) throws CoreException{
+		installApk(apkFile, serialNumber, new NullProgressMonitor());
+	}
+	
+	/**
+	 * Installs the APK to the device, replacing the existing one. 
+	 * The installation is done through the adb server, an adb process is 
+	 * only used if the adb server can not be reached.
+	 * 
+	 * @param apkFile
+	 * @param serialNumber
+	 * @param monitor cancels the installation
+	 * @throws CoreException if the installation fails, does not complete 
+	 * in time or is cancelled
+	 */
+	public void installApk(File apkFile, String serialNumber, IProgressMonitor monitor) throws CoreException{
 		Assert.isNotNull(serialNumber);
+		String remoteApk = REMOTE_TEMP_DIR + apkFile.getName();
+		try{
+			adb.push(serialNumber, apkFile, remoteApk);
+			String output;
+			try{
+				output = adb.shell(serialNumber, "pm install -r \"" + remoteApk + "\"", INSTALL_TIMEOUT, monitor);
+			}finally{
+				removeRemoteFile(serialNumber, remoteApk);
+			}
+			checkInstallOutput(output);
+			return;
+		}catch(AdbClient.ServerNotReachableException e){
+			HybridCore.trace("adb server is not reachable, running adb install: " + e.getMessage());
+		}catch(IOException e){
+			throw toCoreException("APK installation did not complete", e, monitor);
+		}
 		ExternalProcessUtility processUtility = new ExternalProcessUtility();
 		StringBuilder command = new StringBuilder("adb");
 		command.append(" -s ").append(serialNumber);
 		command.append(" install");
 		command.append(" -r ");
 		command.append("\"").append(apkFile.getPath()).append("\"");
-		TextDetectingStreamListener listener = new TextDetectingStreamListener("Success");
-		processUtility.execSync(command.toString(), null,listener, listener, new NullProgressMonitor(), null, null);
-		if (!listener.isTextDetected()){
+		ProcessResult result = processUtility.execQuery(command.toString(), null, null, INSTALL_TIMEOUT);
+		checkInstallOutput(result.getOutput());
+	}
+	
+	private void removeRemoteFile(String serialNumber, String remotePath){
+		try{
+			adb.shell(serialNumber, "rm \"" + remotePath + "\"", REMOVE_TIMEOUT, null);
+		}catch(IOException e){
+			HybridCore.trace("Can not remove " + remotePath + " from the device: " + e.getMessage());
+		}
+	}
+	
+	private static CoreException toCoreException(String message, IOException e, IProgressMonitor monitor){
+		int severity = monitor != null && monitor.isCanceled() ? IStatus.CANCEL : IStatus.ERROR;
+		return new CoreException(new Status(severity, AndroidCore.PLUGIN_ID, message + ": " + e.getMessage(), e));
+	}
+	
+	/**
+	 * pm prints either Success or Failure [REASON] at the start of a line, 
+	 * whichever comes first decides
+	 */
+	private static void checkInstallOutput(String output) throws CoreException{
+		StreamingTextMatcher matcher = new StreamingTextMatcher(INSTALL_PATTERNS, null);
+		// so that a status on the first line also starts with a new line
+		matcher.append("\n");
+		matcher.append(output);
+		if(matcher.getMatchIndex() != 0 ){
 			throw new CoreException(new Status(IStatus.ERROR, AndroidCore.PLUGIN_ID, "APK installation did not succeed"));
 		}
 	}
 	
+	/**
+	 * Waits until an emulator is online without a timeout.
+	 * 
+	 * @throws CoreException
+	 * @see #waitForEmulator(long, IProgressMonitor)
+	 */
 	public void waitForEmulator() throws CoreException{
-		while(true){
-			List<AndroidDevice> devices = this.listDevices();
-			if(devices != null ){
-				for (AndroidDevice androidDevice : devices) {
-					if(androidDevice.isEmulator() && androidDevice.getState() == AndroidDevice.STATE_DEVICE)
-						return;
+		waitForEmulator(0, new NullProgressMonitor());
+	}
+	
+	/**
+	 * Waits until an emulator is online. Device changes are received from 
+	 * the {@link AndroidDeviceMonitor}, if the adb server can not be reached 
+	 * the device list is polled. 
+	 * 
+	 * @param timeout in milliseconds, 0 means no timeout
+	 * @param monitor cancels the wait
+	 * @return the emulator
+	 * @throws CoreException if the timeout expires or the wait is cancelled 
+	 */
+	public AndroidDevice waitForEmulator(long timeout, IProgressMonitor monitor) throws CoreException{
+		AndroidDeviceMonitor deviceMonitor = AndroidDeviceMonitor.getInstance();
+		deviceMonitor.start();
+		Future<AndroidDevice> future = deviceMonitor.waitForOnlineEmulator();
+		long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+		try{
+			while(true){
+				try {
+					return future.get(EMULATOR_WAIT_INTERVAL, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					//check for cancellation and timeout below
+				}
+				if(monitor.isCanceled()){
+					throw new CoreException(new Status(IStatus.CANCEL, AndroidCore.PLUGIN_ID, "Waiting for the emulator is cancelled"));
+				}
+				if(System.currentTimeMillis() >= deadline ){
+					throw new CoreException(new Status(IStatus.ERROR, AndroidCore.PLUGIN_ID, "Emulator did not come online in " + timeout + " ms"));
+				}
+				if(!deviceMonitor.isTracking()){
+					List<AndroidDevice> devices = listDevices();
+					if(devices != null ){
+						deviceMonitor.update(devices);
+					}
 				}
 			}
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CoreException(new Status(IStatus.CANCEL, AndroidCore.PLUGIN_ID, "Waiting for the emulator is interrupted", e));
+		} catch (ExecutionException e) {
+			throw new CoreException(new Status(IStatus.ERROR, AndroidCore.PLUGIN_ID, "Error while waiting for the emulator", e));
+		} finally{
+			future.cancel(false);
 		}
 	}
 	
 	public void startApp(String component, String serialNumber) throws CoreException{
+		startApp(component, serialNumber, new NullProgressMonitor());
+	}
+	
+	/**
+	 * Starts the activity on the device through the adb server, 
+	 * an adb process is only used if the adb server can not be reached.
+	 * 
+	 * @param component activity component name
+	 * @param serialNumber
+	 * @param monitor cancels starting the activity
+	 * @throws CoreException
+	 */
+	public void startApp(String component, String serialNumber, IProgressMonitor monitor) throws CoreException{
+		try{
+			adb.shell(serialNumber, "am start -n " + component, START_TIMEOUT, monitor);
+			return;
+		}catch(AdbClient.ServerNotReachableException e){
+			HybridCore.trace("adb server is not reachable, running adb shell: " + e.getMessage());
+		}catch(IOException e){
+			throw toCoreException("Starting " + component + " did not complete", e, monitor);
+		}
 		ExternalProcessUtility processUtility = new ExternalProcessUtility();
 		StringBuilder command = new StringBuilder("adb");
 		command.append(" -s ").append(serialNumber);
 		command.append(" shell am start");
 		command.append(" -n ");
 		command.append(component);
-		processUtility.execSync(command.toString(), null, null, null,new NullProgressMonitor(), null, null);
+		processUtility.execQuery(command.toString(), null, null, START_TIMEOUT);
 		
 	}
 	
+	/**
+	 * Starts logcat for the device. When listeners are given and the adb server 
+	 * is running, the log is read from the server and passed to the listeners. 
+	 * Otherwise an adb logcat process is started, which also shows the log on 
+	 * the console.
+	 * 
+	 * @param filter
+	 * @param outListener
+	 * @param errorListener
+	 * @param serialNumber
+	 * @throws CoreException
+	 */
 	public void logcat(String filter, IStreamListener outListener, IStreamListener errorListener, String serialNumber) throws CoreException{
+		if(outListener != null ){
+			try{
+				InputStream log = adb.logcat(serialNumber, filter);
+				new LogcatReader(log, outListener).start();
+				return;
+			}catch(IOException e){
+				HybridCore.trace("adb server is not reachable, running adb logcat: " + e.getMessage());
+			}
+		}
 		ExternalProcessUtility processUtility = new ExternalProcessUtility();
 		StringBuilder command = new StringBuilder("adb");
 		command.append(" -s ").append(serialNumber);
 		command.append(" logcat");
 		if(filter !=null && !filter.isEmpty()){
-			command.append(filter);
+			command.append(' ').append(filter);
 		}
 		processUtility.execAsync(command.toString(), null, outListener, errorListener, null);
 	}
@@ -10,11 +10,13 @@
  *******************************************************************************/
 package org.jboss.tools.aerogear.hybrid.core;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 
-import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ILog;
@@ -24,7 +26,8 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.osgi.service.debug.DebugOptions;
 import org.eclipse.osgi.service.debug.DebugOptionsListener;
 import org.eclipse.osgi.service.debug.DebugTrace;
-import org.jboss.tools.aerogear.hybrid.core.natures.HybridAppNature;
+import org.jboss.tools.aerogear.hybrid.core.util.BundleJarCache;
+import org.jboss.tools.aerogear.hybrid.core.util.TemplateEngine;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 
@@ -35,9 +38,33 @@ public class HybridCore implements BundleActivator, DebugOptionsListener {
 	 */	
 	public static final String PLUGIN_ID = "org.jboss.tools.earogear.hybrid.core";
 	
+	/**
+	 * Trace category for general messages 
+	 */
+	public static final String TRACE_DEFAULT = "/debug";
+	/**
+	 * Trace category for the external processes, command lines at 
+	 * {@link #TRACE_INFO} and their output at {@link #TRACE_VERBOSE}
+	 */
+	public static final String TRACE_PROCESS = "/debug/process";
+	/**
+	 * Trace category for timings
+	 */
+	public static final String TRACE_PERF = "/debug/perf";
+	
+	public static final int TRACE_OFF = 0;
+	public static final int TRACE_INFO = 1;
+	public static final int TRACE_VERBOSE = 2;
+	
+	private static final String[] TRACE_CATEGORIES = {TRACE_DEFAULT, TRACE_PROCESS, TRACE_PERF};
+	// appended to a category for the boolean option that enables its verbose level
+	private static final String TRACE_VERBOSE_SUFFIX = "/verbose";
+	private static final int TRACE_QUEUE_SIZE = 4096;
+	
 	private static BundleContext context;
-	public static boolean DEBUG = true;
-	private static DebugTrace TRACE;
+	public static volatile boolean DEBUG = false;
+	private static volatile Map<String, Integer> traceLevels = Collections.emptyMap();
+	private static final TraceSink traceSink = new TraceSink(TRACE_QUEUE_SIZE);
 	private static ILog logger;
 	
 	public static BundleContext getContext() {
@@ -51,10 +78,15 @@ public class HybridCore implements BundleActivator, DebugOptionsListener {
 	public void start(BundleContext bundleContext) throws Exception {
 		HybridCore.context = bundleContext;
 		logger = Platform.getLog(getContext().getBundle());
+		traceSink.start();
 		Hashtable<String,Object> props = new Hashtable<String, Object>();
 		props.put(org.eclipse.osgi.service.debug.DebugOptions.LISTENER_SYMBOLICNAME, PLUGIN_ID);
 		context.registerService(DebugOptionsListener.class.getName(), this, props);
-
+		context.addBundleListener(BundleJarCache.getInstance());
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(WidgetCache.getInstance(),
+				IResourceChangeEvent.POST_CHANGE | IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(HybridProjectIndex.getInstance(),
+				IResourceChangeEvent.POST_CHANGE | IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
 	}
 
 	/*
@@ -62,20 +94,26 @@ public class HybridCore implements BundleActivator, DebugOptionsListener {
 	 * @see org.osgi.framework.BundleActivator#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext bundleContext) throws Exception {
+		bundleContext.removeBundleListener(BundleJarCache.getInstance());
+		BundleJarCache.getInstance().clear();
+		TemplateEngine.getInstance().clear();
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(WidgetCache.getInstance());
+		WidgetCache.getInstance().clear();
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(HybridProjectIndex.getInstance());
+		HybridProjectIndex.getInstance().clear();
+		DEBUG = false;
+		traceSink.stop();
 		HybridCore.context = null;
 	}
 	
+	/**
+	 * Returns the hybrid projects in the workspace. The list is served from
+	 * an index that is kept up to date with the workspace changes.
+	 * 
+	 * @return hybrid projects ordered by name
+	 */
 	public static List<HybridProject> getHybridProjects(){
-		ArrayList<HybridProject> hybrids = new ArrayList<HybridProject>();
-		IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
-		for (IProject project : projects) {
-			HybridProject hybridProject = HybridProject.getHybridProject(project);
-			if(hybridProject != null ){
-				hybrids.add(hybridProject);
-			}
-		
-		}
-		return hybrids;
+		return HybridProjectIndex.getInstance().getHybridProjects();
 	}
 
 	
@@ -83,15 +121,69 @@ public class HybridCore implements BundleActivator, DebugOptionsListener {
 	
 	@Override
 	public void optionsChanged(DebugOptions options) {
-		if(TRACE==null)
-			TRACE = options.newDebugTrace(PLUGIN_ID);
-		DEBUG = options.getBooleanOption(PLUGIN_ID+"/debug", true);	
+		traceSink.setOutput(options.newDebugTrace(PLUGIN_ID));
+		Map<String, Integer> levels = new HashMap<String, Integer>();
+		for (String category : TRACE_CATEGORIES) {
+			levels.put(category, Integer.valueOf(toTraceLevel(options, category)));
+		}
+		traceLevels = levels;
+		DEBUG = options.isDebugEnabled() && levels.get(TRACE_DEFAULT).intValue() > TRACE_OFF;
+	}
+	
+	/**
+	 * Options are booleans, {@link DebugTrace} only writes the options 
+	 * that are <i>true</i>. A category is traced at {@link #TRACE_INFO} 
+	 * when its option is true and at {@link #TRACE_VERBOSE} when its 
+	 * <i>/verbose</i> option is also true.
+	 */
+	private static int toTraceLevel(DebugOptions options, String category){
+		if(!options.getBooleanOption(PLUGIN_ID + category, false))
+			return TRACE_OFF;
+		if(options.getBooleanOption(PLUGIN_ID + category + TRACE_VERBOSE_SUFFIX, false))
+			return TRACE_VERBOSE;
+		return TRACE_INFO;
+	}
+	
+	/**
+	 * Checks if messages of the given category and level are traced. 
+	 * Callers that build expensive messages should check this first.
+	 * 
+	 * @param category one of the TRACE_ categories
+	 * @param level {@link #TRACE_INFO} or {@link #TRACE_VERBOSE}
+	 * @return true if tracing is enabled
+	 */
+	public static boolean isTracing(String category, int level){
+		if(!DEBUG)
+			return false;
+		Integer enabled = traceLevels.get(category);
+		return enabled != null && enabled.intValue() >= level;
 	}
 	
 	public static void trace( String message){
-		System.out.println(message);//TODO: Remove this eventually?
-		if( !DEBUG ) return;
-		TRACE.trace(null, message);
+		trace(TRACE_DEFAULT, TRACE_INFO, message);
+	}
+	
+	/**
+	 * Traces the message if the category is enabled for the level. 
+	 * Messages are written on a background thread, this method does 
+	 * not block. 
+	 * 
+	 * @param category one of the TRACE_ categories
+	 * @param level {@link #TRACE_INFO} or {@link #TRACE_VERBOSE}
+	 * @param message
+	 */
+	public static void trace(String category, int level, String message){
+		if(!isTracing(category, level))
+			return;
+		traceSink.offer(category, message);
+	}
+	
+	/**
+	 * @return number of trace messages dropped because 
+	 * they were produced faster than they could be written
+	 */
+	public static long getDroppedTraceCount(){
+		return traceSink.getDroppedCount();
 	}
 	
 	public static void log(int status, String message, Throwable throwable ){
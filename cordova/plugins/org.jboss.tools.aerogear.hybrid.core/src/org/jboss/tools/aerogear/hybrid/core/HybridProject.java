@@ -20,12 +20,13 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.jboss.tools.aerogear.hybrid.core.config.Widget;
+import org.jboss.tools.aerogear.hybrid.core.config.WidgetMetadataReader;
 import org.jboss.tools.aerogear.hybrid.core.config.WidgetModel;
-import org.jboss.tools.aerogear.hybrid.core.natures.HybridAppNature;
 import org.jboss.tools.aerogear.hybrid.core.platform.PlatformConstants;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -39,14 +40,15 @@ public class HybridProject {
 	
 	private static final String PATH_CONFIG_XML = "/"+PlatformConstants.DIR_WWW+"/"+PlatformConstants.FILE_XML_CONFIG;
 	private IProject kernelProject;
-	private Document configDocument;
 	
-	private HybridProject(IProject project) {
+	HybridProject(IProject project) {
 		this.kernelProject = project;
 	} 
 	
 	/**
-	 * Returns the {@link Widget} model for the config.xml
+	 * Returns the {@link Widget} model for the config.xml. Every call 
+	 * returns a new widget that is not shared with the other callers, 
+	 * changes are only visible to others after {@link #saveWidget(Widget)}.
 	 * 
 	 * @return widget
 	 * @throws CoreException
@@ -57,15 +59,21 @@ public class HybridProject {
 	 *
 	 */
 	public Widget getWidget() throws CoreException{
-		
+		IFile file = kernelProject.getFile(PATH_CONFIG_XML);
+		WidgetCache cache = WidgetCache.getInstance();
+		WidgetCache.Entry entry = cache.get(kernelProject, file);
+		if(entry != null )
+			return entry.newWidget();
+		// stamp before reading so that a concurrent change invalidates what we cache
+		long stamp = file.getModificationStamp();
+
 	    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
 	    dbf.setNamespaceAware(true);
 	    DocumentBuilder db;
-
+	    Document configDocument;
 	    try{
 	    	db = dbf.newDocumentBuilder();
-	    	configDocument = db.parse( kernelProject.getFile(
-	    			PATH_CONFIG_XML).getContents()); 
+	    	configDocument = db.parse(file.getContents()); 
 	    }
 		catch (ParserConfigurationException e) {
 			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Parser error when parsing config.xml", e));
@@ -75,8 +83,9 @@ public class HybridProject {
 			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "IO error when parsing config.xml", e));
 		} 
 		
-		 Widget widget = WidgetModel.getInstance().load(configDocument);
-		 return widget;
+		Widget widget = WidgetModel.getInstance().load(configDocument);
+		cache.put(kernelProject, stamp, configDocument, widget);
+		return widget;
 	}
 
 	public void saveWidget(Widget widget) throws CoreException{
@@ -85,7 +94,11 @@ public class HybridProject {
 			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, kernelProject.getName() + " does not have a config.xml"));
 		}
 		File config = file.getLocation().toFile();
-		WidgetModel.getInstance().save(widget, config);
+		// written outside the workspace, the stamp does not change until a refresh
+		WidgetCache.getInstance().remove(kernelProject);
+		if(WidgetModel.getInstance().save(widget, config)){
+			file.refreshLocal(IResource.DEPTH_ZERO, null);
+		}
 	}
 	
 	/**
@@ -97,9 +110,10 @@ public class HybridProject {
 	}
 	
 	/**
-	 * Creates a hybrid project handle for the project. 
-	 * Can return null if the given project is not a hybrid 
-	 * mobile project.
+	 * Returns the hybrid project handle for the project. 
+	 * The same handle is returned for a project as long as it 
+	 * stays a hybrid project. Can return null if the given project 
+	 * is not a hybrid mobile project.
 	 * 
 	 * @param project
 	 * @return hybrid project or null
@@ -107,14 +121,7 @@ public class HybridProject {
 	public static HybridProject getHybridProject(IProject project) {
 		if(project == null ) 
 			return null;
-		try {
-			if (project.hasNature(HybridAppNature.NATURE_ID)) {
-				return new HybridProject(project);
-			}
-		} catch (CoreException e) {
-			// let it return null
-		}
-		return null;
+		return HybridProjectIndex.getInstance().getHybridProject(project);
 	}
 
 	/**
@@ -125,8 +132,8 @@ public class HybridProject {
 	public String getAppName(){
 		String name = null;
 		try{
-			Widget widgetModel = this.getWidget();
-			name = widgetModel.getName();	
+			WidgetCache.Entry entry = getCacheEntry();
+			name = entry != null ? entry.name : readMetadata().getName();
 		}catch(CoreException e){
 			//let it come from project name
 		}
@@ -136,6 +143,29 @@ public class HybridProject {
 		return name;
 	}
 	
+	/**
+	 * Returns the id of the application from the config.xml. 
+	 * Unlike {@link #getWidget()} this does not build the 
+	 * config.xml model unless it is already available.
+	 * 
+	 * @return id or null if config.xml does not define one
+	 * @throws CoreException if config.xml can not be read
+	 */
+	public String getAppId() throws CoreException{
+		WidgetCache.Entry entry = getCacheEntry();
+		if(entry != null )
+			return entry.id;
+		return readMetadata().getId();
+	}
+	
+	private WidgetCache.Entry getCacheEntry(){
+		return WidgetCache.getInstance().get(kernelProject, kernelProject.getFile(PATH_CONFIG_XML));
+	}
+	
+	private WidgetMetadataReader readMetadata() throws CoreException{
+		return WidgetMetadataReader.read(kernelProject.getFile(PATH_CONFIG_XML).getContents());
+	}
+	
 	/**
 	 * Returns an app name that can be used to name build 
 	 * artifacts. The returned name does not contain whitespaces.
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *       Red Hat, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.jboss.tools.aerogear.hybrid.core.natures.HybridAppNature;
+
+/**
+ * Index of the hybrid projects in the workspace. It is filled on first use
+ * and kept up to date from the resource change events when projects are 
+ * added, removed, opened, closed or their description changes. Keeps a 
+ * single {@link HybridProject} handle for each project.
+ * 
+ * @author Gorkem Ercan
+ *
+ */
+final class HybridProjectIndex implements IResourceChangeListener {
+	
+	private static final HybridProjectIndex instance = new HybridProjectIndex();
+	private static final Comparator<HybridProject> NAME_ORDER = new Comparator<HybridProject>() {
+		@Override
+		public int compare(HybridProject o1, HybridProject o2) {
+			return o1.getProject().getName().compareTo(o2.getProject().getName());
+		}
+	};
+	
+	private final ConcurrentMap<IProject, HybridProject> projects = new ConcurrentHashMap<IProject, HybridProject>();
+	private volatile boolean initialized;
+	
+	private HybridProjectIndex(){
+		//singleton
+	}
+	
+	static HybridProjectIndex getInstance(){
+		return instance;
+	}
+	
+	/**
+	 * @return all the hybrid projects in the workspace ordered by name
+	 */
+	List<HybridProject> getHybridProjects(){
+		initialize();
+		List<HybridProject> list = new ArrayList<HybridProject>(projects.values());
+		Collections.sort(list, NAME_ORDER);
+		return list;
+	}
+	
+	/**
+	 * Returns the handle for the project. Projects that are not in the 
+	 * index yet, such as the ones created by an operation that is still 
+	 * running, are checked and added. 
+	 * 
+	 * @param project
+	 * @return hybrid project or null
+	 */
+	HybridProject getHybridProject(IProject project){
+		HybridProject hybridProject = projects.get(project);
+		if(hybridProject != null && project.isAccessible())
+			return hybridProject;
+		return update(project);
+	}
+	
+	void clear(){
+		projects.clear();
+		initialized = false;
+	}
+	
+	private void initialize(){
+		if(initialized)
+			return;
+		synchronized (this) {
+			if(initialized)
+				return;
+			IProject[] all = ResourcesPlugin.getWorkspace().getRoot().getProjects();
+			for (IProject project : all) {
+				update(project);
+			}
+			initialized = true;
+		}
+	}
+	
+	private HybridProject update(IProject project){
+		if(!isHybrid(project)){
+			projects.remove(project);
+			return null;
+		}
+		HybridProject hybridProject = new HybridProject(project);
+		HybridProject existing = projects.putIfAbsent(project, hybridProject);
+		return existing == null ? hybridProject : existing;
+	}
+	
+	private static boolean isHybrid(IProject project){
+		try {
+			return project.isAccessible() && project.hasNature(HybridAppNature.NATURE_ID);
+		} catch (CoreException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+		switch (event.getType()) {
+		case IResourceChangeEvent.PRE_CLOSE:
+		case IResourceChangeEvent.PRE_DELETE:
+			if(event.getResource() instanceof IProject){
+				projects.remove(event.getResource());
+			}
+			break;
+		case IResourceChangeEvent.POST_CHANGE:
+			IResourceDelta delta = event.getDelta();
+			if(delta == null )
+				return;
+			for (IResourceDelta projectDelta : delta.getAffectedChildren()) {
+				IProject project = (IProject) projectDelta.getResource();
+				switch (projectDelta.getKind()) {
+				case IResourceDelta.REMOVED:
+					projects.remove(project);
+					break;
+				case IResourceDelta.ADDED:
+					update(project);
+					break;
+				case IResourceDelta.CHANGED:
+					if((projectDelta.getFlags() & (IResourceDelta.OPEN | IResourceDelta.DESCRIPTION)) != 0){
+						update(project);
+					}
+					break;
+				default:
+					break;
+				}
+			}
+			break;
+		default:
+			break;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *       Red Hat, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.osgi.service.debug.DebugTrace;
+
+/**
+ * Queues trace messages and writes them to the {@link DebugTrace} on a
+ * background thread, so that the threads that trace never block on
+ * the trace output. Messages are kept in a fixed size lock-free ring, when
+ * the ring is full new messages are dropped and counted.
+ *
+ * @author Gorkem Ercan
+ *
+ */
+final class TraceSink {
+
+	private static final class Entry {
+		final String option;
+		final String message;
+		final String thread;
+
+		Entry(String option, String message, String thread) {
+			this.option = option;
+			this.message = message;
+			this.thread = thread;
+		}
+	}
+
+	private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final AtomicReferenceArray<Entry> ring;
+	private final int mask;
+	// next sequence to be claimed by a producer
+	private final AtomicLong head = new AtomicLong();
+	// next sequence to be written, only advanced by the drainer
+	private volatile long tail;
+	private final AtomicLong dropped = new AtomicLong();
+	private long reportedDrops;
+	private volatile DebugTrace output;
+	private volatile Thread drainer;
+	private volatile boolean idle;
+	// set by stop(), no drainer is started until start() is called again
+	private volatile boolean stopped;
+
+	/**
+	 * @param capacity rounded up to a power of two
+	 */
+	TraceSink(int capacity){
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		ring = new AtomicReferenceArray<Entry>(size);
+		mask = size - 1;
+	}
+
+	void setOutput(DebugTrace trace){
+		output = trace;
+	}
+
+	/**
+	 * Queues the message. Never blocks, if the queue is full or the 
+	 * sink is stopped the message is dropped.
+	 *
+	 * @param option debug option the message is traced for
+	 * @param message
+	 * @return false if the message was dropped
+	 */
+	boolean offer(String option, String message){
+		if(stopped )
+			return false;
+		Entry entry = new Entry(option, message, Thread.currentThread().getName());
+		long sequence;
+		do{
+			sequence = head.get();
+			if(sequence - tail >= ring.length()){
+				dropped.incrementAndGet();
+				return false;
+			}
+		}while(!head.compareAndSet(sequence, sequence + 1));
+		ring.set((int) sequence & mask, entry);
+
+		Thread t = drainer;
+		if(t == null ){
+			startDrainer();
+		}else if(idle){
+			LockSupport.unpark(t);
+		}
+		return true;
+	}
+
+	/**
+	 * @return number of messages dropped because the queue was full
+	 */
+	long getDroppedCount(){
+		return dropped.get();
+	}
+
+	/**
+	 * @return number of messages waiting to be written
+	 */
+	int getPendingCount(){
+		return (int) (head.get() - tail);
+	}
+
+	/**
+	 * Allows the background thread to be started again after {@link #stop()}.
+	 */
+	synchronized void start(){
+		stopped = false;
+	}
+
+	/**
+	 * Stops the background thread after writing the queued messages.
+	 * Messages offered afterwards are dropped until {@link #start()}.
+	 */
+	void stop(){
+		Thread t;
+		synchronized (this) {
+			stopped = true;
+			t = drainer;
+			drainer = null;
+		}
+		if(t == null )
+			return;
+		LockSupport.unpark(t);
+		try {
+			t.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private synchronized void startDrainer(){
+		if(drainer != null || stopped )
+			return;
+		Thread t = new Thread("Hybrid Mobile trace"){
+			@Override
+			public void run() {
+				drain(this);
+			}
+		};
+		t.setDaemon(true);
+		drainer = t;
+		t.start();
+	}
+
+	private void drain(Thread self){
+		while(true){
+			boolean running = drainer == self;
+			int written = writeQueued();
+			if(!running && getPendingCount() == 0)
+				return;
+			if(written == 0 ){
+				idle = true;
+				if(getPendingCount() == 0 && drainer == self){
+					LockSupport.parkNanos(this, IDLE_WAIT);
+				}else{
+					// a producer has claimed a slot but not filled it yet
+					Thread.yield();
+				}
+				idle = false;
+			}
+		}
+	}
+
+	private int writeQueued(){
+		int written = 0;
+		long current = tail;
+		while(current < head.get()){
+			int index = (int) current & mask;
+			Entry entry = ring.get(index);
+			if(entry == null )
+				break;
+			ring.set(index, null);
+			tail = ++current;
+			write(entry.option, "[" + entry.thread + "] " + entry.message);
+			written++;
+		}
+		long drops = dropped.get();
+		if(drops != reportedDrops){
+			write(HybridCore.TRACE_DEFAULT, (drops - reportedDrops) + " trace messages were dropped");
+			reportedDrops = drops;
+		}
+		return written;
+	}
+
+	private void write(String option, String message){
+		DebugTrace trace = output;
+		if(trace != null ){
+			trace.trace(option, message);
+		}
+	}
+}
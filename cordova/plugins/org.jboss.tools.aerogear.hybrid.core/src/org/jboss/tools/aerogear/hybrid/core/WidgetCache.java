@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *       Red Hat, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.jboss.tools.aerogear.hybrid.core.config.Widget;
+import org.jboss.tools.aerogear.hybrid.core.config.WidgetModel;
+import org.jboss.tools.aerogear.hybrid.core.platform.PlatformConstants;
+import org.w3c.dom.Document;
+
+/**
+ * Caches the parsed config.xml for each project. An entry is only
+ * used while the modification stamp of config.xml is the same as the one
+ * it was parsed from. Entries are also dropped when config.xml changes
+ * or the project is closed or deleted.
+ * <p>
+ * The cache keeps a private copy of the document that is never handed 
+ * out. Every caller gets its own {@link Widget} on a clone of it, so 
+ * changes that are not saved are never seen by the other callers. 
+ * The app id and name are kept with the entry so that they can be 
+ * read without cloning.
+ * </p>
+ *
+ * @author Gorkem Ercan
+ *
+ */
+final class WidgetCache implements IResourceChangeListener {
+
+	static final IPath PATH_CONFIG_XML = new Path(PlatformConstants.DIR_WWW).append(PlatformConstants.FILE_XML_CONFIG);
+
+	static final class Entry {
+		final long stamp;
+		// only read while holding its lock, DOM implementations are not thread safe
+		private final Document snapshot;
+		final String id;
+		final String name;
+
+		Entry(long stamp, Document snapshot, String id, String name) {
+			this.stamp = stamp;
+			this.snapshot = snapshot;
+			this.id = id;
+			this.name = name;
+		}
+
+		Widget newWidget(){
+			Document copy;
+			synchronized (snapshot) {
+				copy = (Document) snapshot.cloneNode(true);
+			}
+			return WidgetModel.getInstance().load(copy);
+		}
+	}
+
+	private static final WidgetCache instance = new WidgetCache();
+	private final ConcurrentMap<IProject, Entry> entries = new ConcurrentHashMap<IProject, Entry>();
+
+	private WidgetCache(){
+		//singleton
+	}
+
+	static WidgetCache getInstance(){
+		return instance;
+	}
+
+	/**
+	 * Returns the cached entry if it was parsed from the current
+	 * contents of config.xml
+	 *
+	 * @param project
+	 * @param configFile
+	 * @return entry or null
+	 */
+	Entry get(IProject project, IFile configFile){
+		Entry entry = entries.get(project);
+		if(entry == null )
+			return null;
+		if(entry.stamp != configFile.getModificationStamp()){
+			entries.remove(project, entry);
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Caches config.xml parsed with the given modification stamp.
+	 *
+	 * @param project
+	 * @param stamp
+	 * @param document parsed config.xml, a copy of it is cached
+	 * @param widget widget for the document, read for its id and name before 
+	 * it is returned to the caller
+	 */
+	void put(IProject project, long stamp, Document document, Widget widget){
+		if(stamp == IResource.NULL_STAMP )
+			return;
+		entries.put(project, new Entry(stamp, (Document) document.cloneNode(true), widget.getId(), widget.getName()));
+	}
+
+	void remove(IProject project){
+		entries.remove(project);
+	}
+
+	void clear(){
+		entries.clear();
+	}
+
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+		if(entries.isEmpty())
+			return;
+		switch (event.getType()) {
+		case IResourceChangeEvent.PRE_CLOSE:
+		case IResourceChangeEvent.PRE_DELETE:
+			if(event.getResource() instanceof IProject){
+				remove((IProject) event.getResource());
+			}
+			break;
+		case IResourceChangeEvent.POST_CHANGE:
+			IResourceDelta delta = event.getDelta();
+			if(delta == null )
+				return;
+			for (IResourceDelta projectDelta : delta.getAffectedChildren()) {
+				IProject project = (IProject) projectDelta.getResource();
+				if(!entries.containsKey(project))
+					continue;
+				if(projectDelta.getKind() != IResourceDelta.CHANGED
+						|| (projectDelta.getFlags() & IResourceDelta.OPEN) != 0
+						|| projectDelta.findMember(PATH_CONFIG_XML) != null ){
+					remove(project);
+				}
+			}
+			break;
+		default:
+			break;
+		}
+	}
+}
@@ -12,6 +12,8 @@ package org.jboss.tools.aerogear.hybrid.core.config;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
@@ -40,6 +42,12 @@ public class AbstractConfigObject {
 	    public void setValue(T value) {
 	        T old = this.value;
 	        this.value = value;
+	        if(batchOldValues != null ){
+	        	// only the value before the batch is reported
+	        	if(!batchOldValues.containsKey(this))
+	        		batchOldValues.put(this, old);
+	        	return;
+	        }
 	        if(propertySupport != null)
 	            propertySupport.firePropertyChange(name, old, this.value);
 	    }
@@ -48,10 +56,68 @@ public class AbstractConfigObject {
 	
 	protected PropertyChangeSupport propertySupport;
 	Element itemNode;
+	private Map<Property<?>, Object> batchOldValues;
+	private int batchDepth;
 	
 	protected AbstractConfigObject(){
 		propertySupport = new PropertyChangeSupport(this);
 	}
+	
+	/**
+	 * Constructor for the model objects contributed with a 
+	 * {@link ConfigObjectFactory}.
+	 * 
+	 * @param node the element that this object represents
+	 */
+	protected AbstractConfigObject(Node node){
+		this();
+		itemNode = (Element)node;
+	}
+	
+	/**
+	 * @return the element that this object represents
+	 */
+	protected Element getItemNode(){
+		return itemNode;
+	}
+
+	/**
+	 * Runs the changes as a single transaction. Property change events 
+	 * are not fired while the changes run, when they complete one event 
+	 * is fired for each property that changed, with the value before the
+	 * transaction as the old value. Nested calls join the outer 
+	 * transaction. 
+	 * 
+	 * @param changes
+	 */
+	public void batch(Runnable changes){
+		if(batchDepth++ == 0 ){
+			batchOldValues = new LinkedHashMap<Property<?>, Object>();
+		}
+		try{
+			changes.run();
+		}finally{
+			if(--batchDepth == 0 ){
+				Map<Property<?>, Object> changed = batchOldValues;
+				batchOldValues = null;
+				for (Map.Entry<Property<?>, Object> entry : changed.entrySet()) {
+					Property<?> property = entry.getKey();
+					propertySupport.firePropertyChange(property.name, entry.getValue(), property.getValue());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns true if the property was set during the running 
+	 * {@link #batch(Runnable)} transaction. 
+	 * 
+	 * @param property
+	 * @return true if changed in the transaction
+	 */
+	protected boolean isChangedInBatch(Property<?> property){
+		return batchOldValues != null && batchOldValues.containsKey(property);
+	}
 
 	/**
 	 * Returns the value of the attribute on node
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *       Red Hat, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core.config;
+
+import org.w3c.dom.Node;
+
+/**
+ * Creates the model object for an element of the config.xml. Factories 
+ * are registered to {@link WidgetModel} for an element name.
+ * 
+ * @see WidgetModel#registerFactory(String, String, Class, ConfigObjectFactory)
+ * @author Gorkem Ercan
+ *
+ * @param <T> type of the model object
+ */
+public interface ConfigObjectFactory<T extends AbstractConfigObject> {
+	
+	/**
+	 * Creates the model object for the given element.
+	 * 
+	 * @param node DOM element 
+	 * @return model object, never null
+	 */
+	public T create(Node node);
+
+}
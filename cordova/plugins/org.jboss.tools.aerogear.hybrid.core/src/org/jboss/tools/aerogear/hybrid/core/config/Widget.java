@@ -10,7 +10,6 @@
  *******************************************************************************/
 package org.jboss.tools.aerogear.hybrid.core.config;
 
-import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.NS_PHONEGAP_1_0;
 import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.NS_W3C_WIDGET;
 import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_ATTR_ID;
 import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_ATTR_VERSION;
@@ -19,21 +18,17 @@ import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.W
 import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_CONTENT;
 import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_DESCRIPTION;
 import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_NAME;
-import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_PREFERENCE;
-import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_FEATURE;
-import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_ACCESS;
-import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_PLUGIN;
-import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_ICON;
-import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_SPLASH;
 import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.NAME_ATTR_SHORT;
-import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_LICENSE;
 
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
-import org.eclipse.core.runtime.IStatus;
-import org.jboss.tools.aerogear.hybrid.core.HybridCore;
+import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -66,6 +61,7 @@ public class Widget extends AbstractConfigObject {
 	private Property<List<Plugin>> plugins = new Property<List<Plugin>>("plugins");
 	private Property<List<Icon>> icons = new Property<List<Icon>>("icons");
 	private Property<List<Splash>> splashes = new Property<List<Splash>>("splashes");
+	private Property<List<AbstractConfigObject>> extensions = new Property<List<AbstractConfigObject>>("extensions");
 	
 	/**
 	 * Creates a new instance from its xml representation.
@@ -89,78 +85,109 @@ public class Widget extends AbstractConfigObject {
 		itemNode = (Element)node;
 		id.setValue(getNodeAttribute(node, null, WIDGET_ATTR_ID));
 		version.setValue(getNodeAttribute(node, null, WIDGET_ATTR_VERSION));
-		
-		
-		loadName(node);
-		loadDescription(node);
-		loadItem(WIDGET_TAG_AUTHOR,null,node, author,Author.class);
-		loadItem(WIDGET_TAG_CONTENT, null, node, content, Content.class);
-		loadItem(WIDGET_TAG_LICENSE,null,node,license,License.class );
-		loadListItem(WIDGET_TAG_PREFERENCE,null,node, preferences, Preference.class);
-		loadListItem(WIDGET_TAG_ACCESS,null, node, accesses, Access.class);
-		loadListItem(WIDGET_TAG_FEATURE, null,node,features, Feature.class);
-		loadListItem(WIDGET_TAG_PLUGIN, null, node, plugins, Plugin.class);
-		loadListItem(WIDGET_TAG_ICON, null, node, icons, Icon.class);
-		loadListItem(WIDGET_TAG_SPLASH,NS_PHONEGAP_1_0, node, splashes, Splash.class);
+		loadChildren(itemNode);
 	}
 
+	/**
+	 * Visits the children of the widget element once and creates the model 
+	 * object for each element that has a {@link ConfigObjectFactory}. 
+	 * Elements without a factory are skipped. Only the objects created by 
+	 * factories that other bundles registered, and that are not one of 
+	 * the known types, become extensions.
+	 * <p>
+	 * Only the direct children of the widget are loaded. Elements nested 
+	 * deeper, such as the icons or preferences inside a <i>platform</i> 
+	 * element, are not part of the model.
+	 * </p>
+	 * 
+	 * @param widget
+	 */
+	private void loadChildren(Element widget){
+		Element nameElement = null;
+		Element descriptionElement = null;
+		Author authorItem = null;
+		Content contentItem = null;
+		License licenseItem = null;
+		ArrayList<Preference> preferenceItems = new ArrayList<Preference>();
+		ArrayList<Access> accessItems = new ArrayList<Access>();
+		ArrayList<Feature> featureItems = new ArrayList<Feature>();
+		ArrayList<Plugin> pluginItems = new ArrayList<Plugin>();
+		ArrayList<Icon> iconItems = new ArrayList<Icon>();
+		ArrayList<Splash> splashItems = new ArrayList<Splash>();
 
-	
-	private <T extends AbstractConfigObject> void loadItem(String tagName, String namespace, Node node, Property<T> prop, Class<T> clazz){
-		Element el = (Element)node;
-		NodeList nodes = el.getElementsByTagNameNS(namespace, tagName);
-		if(nodes.getLength()>0){
-			try{
-				prop.setValue(clazz.getDeclaredConstructor(Node.class).newInstance(nodes.item(0)));
-			}catch(Exception e){
-				HybridCore.log(IStatus.ERROR, "Error invoking the Node constructor for config model object", e);
+		ArrayList<AbstractConfigObject> extensionItems = new ArrayList<AbstractConfigObject>();
+
+		for (Node child = widget.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if(child.getNodeType() != Node.ELEMENT_NODE )
+				continue;
+			String namespace = child.getNamespaceURI();
+			String tag = child.getLocalName() != null ? child.getLocalName() : child.getNodeName();
+			if(namespace == null || NS_W3C_WIDGET.equals(namespace)){
+				if(WIDGET_TAG_NAME.equals(tag)){
+					if(nameElement == null )
+						nameElement = (Element) child;
+					continue;
+				}
+				if(WIDGET_TAG_DESCRIPTION.equals(tag)){
+					if(descriptionElement == null )
+						descriptionElement = (Element) child;
+					continue;
+				}
+			}
+			AbstractConfigObject item = WidgetModel.newConfigObject(namespace, tag, child);
+			if(item == null )
+				continue;
+			if(item instanceof Preference){
+				preferenceItems.add((Preference) item);
+			}else if(item instanceof Access){
+				accessItems.add((Access) item);
+			}else if(item instanceof Feature){
+				featureItems.add((Feature) item);
+			}else if(item instanceof Plugin){
+				pluginItems.add((Plugin) item);
+			}else if(item instanceof Icon){
+				iconItems.add((Icon) item);
+			}else if(item instanceof Splash){
+				splashItems.add((Splash) item);
+			}else if(item instanceof Author){
+				if(authorItem == null )
+					authorItem = (Author) item;
+			}else if(item instanceof Content){
+				if(contentItem == null )
+					contentItem = (Content) item;
+			}else if(item instanceof License){
+				if(licenseItem == null )
+					licenseItem = (License) item;
+			}else{
+				extensionItems.add(item);
 			}
-		}else{
-			prop.setValue(null);
 		}
 		
-	}
-
-	private void loadDescription(Node node) {
-		description.setValue(getTextContentForTag(node, WIDGET_TAG_DESCRIPTION));
-	}
-
-	private void loadName(Node node) {
-		name.setValue(getTextContentForTag(node, WIDGET_TAG_NAME));
-		NodeList nodes = itemNode.getElementsByTagNameNS(NS_W3C_WIDGET, WIDGET_TAG_NAME);
-		if(nodes.getLength() >0 ){
-			shortname.setValue(getNodeAttribute(nodes.item(0),null,NAME_ATTR_SHORT));	
+		if(nameElement != null ){
+			name.setValue(nameElement.getTextContent());
+			shortname.setValue(getNodeAttribute(nameElement, null, NAME_ATTR_SHORT));
 		}else{
+			name.setValue(null);
 			shortname.setValue(null);
 		}
-	}
-	
-	private <T extends AbstractConfigObject> void loadListItem(String tagName, String namespaceURI, Node node, Property<List<T>> props, Class<T> clazz){
-		ArrayList<T> items = null; 
-		Element el = (Element)node;
-		
-		NodeList nodes = null;
-		if(namespaceURI != null ){
-			nodes = el.getElementsByTagNameNS(namespaceURI,tagName);
-		}else{
-			nodes = el.getElementsByTagName(tagName);
-		}
-		
-		if (nodes.getLength() > 0) {
-			items = new ArrayList<T>();
-			for (int i = 0; i < nodes.getLength(); i++) {
-				try {
-					T item = clazz.getDeclaredConstructor(Node.class)
-							.newInstance(nodes.item(i));
-					items.add(item);
-				} catch (Exception e) {
-					HybridCore.log(IStatus.ERROR,
-									"Error invoking the Node constructor for config model object",
-									e);
-				}
-			}
-		}
-		props.setValue(items);
+		description.setValue(descriptionElement == null ? null : descriptionElement.getTextContent());
+		author.setValue(authorItem);
+		content.setValue(contentItem);
+		license.setValue(licenseItem);
+		preferences.setValue(listOrNull(preferenceItems));
+		accesses.setValue(listOrNull(accessItems));
+		features.setValue(listOrNull(featureItems));
+		plugins.setValue(listOrNull(pluginItems));
+		icons.setValue(listOrNull(iconItems));
+		splashes.setValue(listOrNull(splashItems));
+		extensions.setValue(listOrNull(extensionItems));
+	}
+	
+	private static <T> List<T> listOrNull(ArrayList<T> list){
+		if(list.isEmpty())
+			return null;
+		list.trimToSize();
+		return list;
 	}
 
 	public String getId() {
@@ -224,6 +251,16 @@ public class Widget extends AbstractConfigObject {
 		return splashes.getValue();
 	}
 	
+	/**
+	 * Returns the model objects for the elements that are 
+	 * created by the factories contributed to {@link WidgetModel}. 
+	 * 
+	 * @return extensions or null
+	 */
+	public List<AbstractConfigObject> getExtensions() {
+		return extensions.getValue();
+	}
+	
 
 	
 	public void setId(String id) {
@@ -300,6 +337,40 @@ public class Widget extends AbstractConfigObject {
 		addItem(splash,splashes);
 	}
 	
+	public void addExtension(AbstractConfigObject extension ){
+		addItem(extension,extensions);
+	}
+	
+	/**
+	 * Adds all the preferences. The DOM elements are inserted in one 
+	 * operation and a single property change event is fired.
+	 * 
+	 * @param preferenceList
+	 */
+	public void addPreferences(Collection<Preference> preferenceList){
+		addItems(preferenceList, preferences);
+	}
+	
+	public void addAccesses(Collection<Access> accessList){
+		addItems(accessList, accesses);
+	}
+	
+	public void addFeatures(Collection<Feature> featureList){
+		addItems(featureList, features);
+	}
+	
+	public void addPlugins(Collection<Plugin> pluginList){
+		addItems(pluginList, plugins);
+	}
+	
+	public void addIcons(Collection<Icon> iconList){
+		addItems(iconList, icons);
+	}
+	
+	public void addSplashes(Collection<Splash> splashList){
+		addItems(splashList, splashes);
+	}
+	
 	
 	public void removePreference( Preference preference){
 		removeItem(preference, this.preferences);
@@ -325,18 +396,61 @@ public class Widget extends AbstractConfigObject {
 		removeItem(splash, this.splashes);
 	}
 	
+	public void removeExtension( AbstractConfigObject extension ){
+		removeItem(extension, this.extensions);
+	}
+	
+	/**
+	 * Removes all the given preferences. Items are matched by identity
+	 * and a single property change event is fired.
+	 * 
+	 * @param preferenceList
+	 */
+	public void removePreferences(Collection<Preference> preferenceList){
+		removeItems(preferenceList, this.preferences);
+	}
+	
+	public void removeAccesses(Collection<Access> accessList){
+		removeItems(accessList, this.accesses);
+	}
+	
+	public void removeFeatures(Collection<Feature> featureList){
+		removeItems(featureList, this.features);
+	}
+	
+	public void removePlugins(Collection<Plugin> pluginList){
+		removeItems(pluginList, this.plugins);
+	}
 	
+	public void removeIcons(Collection<Icon> iconList){
+		removeItems(iconList, this.icons);
+	}
 	
+	public void removeSplashes(Collection<Splash> splashList){
+		removeItems(splashList, this.splashes);
+	}
+	
+	
+	
+	/*
+	 * The list set on a property during a batch is not visible to any 
+	 * listener yet, so it is modified in place instead of being copied 
+	 * for every item.
+	 */
 	private <T extends AbstractConfigObject > void removeItem(T object, Property<List<T>> property){
 		if(object == null )
 			return;
 		List<T> oldList = property.getValue();
-		if (oldList.contains(object)){
+		if (oldList != null && oldList.contains(object)){
 			Node removed = this.itemNode.removeChild(object.itemNode);	
 			if(removed != null){
-				List<T> list = new ArrayList<T>(oldList);
-				list.remove(object);
-				property.setValue(list);	
+				if(isChangedInBatch(property)){
+					oldList.remove(object);
+				}else{
+					List<T> list = new ArrayList<T>(oldList);
+					list.remove(object);
+					property.setValue(list);
+				}
 			}
 			
 		}
@@ -347,22 +461,78 @@ public class Widget extends AbstractConfigObject {
 	private <T extends AbstractConfigObject> void addItem(T object, Property<List<T>> property){
 		if (object == null )
 			return;
-		List<T> objects = new ArrayList<T>();
-		if(property.getValue() == null ){
-			Node newNode = itemNode.appendChild(object.itemNode);
-			if (newNode != null ){
-				objects.add(object);
-			}
+		List<T> current = property.getValue();
+		Node newNode = null;
+		if(current == null || current.isEmpty()){
+			newNode = itemNode.appendChild(object.itemNode);
 		}else{
-			objects.addAll(property.getValue());
-			Node ref = objects.get(objects.size()-1).itemNode.getNextSibling();
-			
-			Node newNode = itemNode.insertBefore(object.itemNode, ref);
-			if(newNode != null ){
-				objects.add(object);
+			Node ref = current.get(current.size()-1).itemNode.getNextSibling();
+			newNode = itemNode.insertBefore(object.itemNode, ref);
+		}
+		if(newNode == null )
+			return;
+		if(current != null && isChangedInBatch(property)){
+			current.add(object);
+		}else{
+			List<T> objects = current == null ? new ArrayList<T>() : new ArrayList<T>(current);
+			objects.add(object);
+			property.setValue(objects);
+		}
+	}
+
+	private <T extends AbstractConfigObject> void addItems(Collection<T> objects, Property<List<T>> property){
+		if(objects == null || objects.isEmpty())
+			return;
+		DocumentFragment fragment = itemNode.getOwnerDocument().createDocumentFragment();
+		List<T> added = new ArrayList<T>(objects.size());
+		for (T object : objects) {
+			if(object == null )
+				continue;
+			fragment.appendChild(object.itemNode);
+			added.add(object);
+		}
+		if(added.isEmpty())
+			return;
+		List<T> current = property.getValue();
+		if(current == null || current.isEmpty()){
+			itemNode.appendChild(fragment);
+		}else{
+			Node ref = current.get(current.size()-1).itemNode.getNextSibling();
+			itemNode.insertBefore(fragment, ref);
+		}
+		if(current != null && isChangedInBatch(property)){
+			current.addAll(added);
+		}else{
+			List<T> list = new ArrayList<T>((current == null ? 0 : current.size()) + added.size());
+			if(current != null )
+				list.addAll(current);
+			list.addAll(added);
+			property.setValue(list);
+		}
+	}
+	
+	private <T extends AbstractConfigObject> void removeItems(Collection<T> objects, Property<List<T>> property){
+		List<T> current = property.getValue();
+		if(objects == null || objects.isEmpty() || current == null || current.isEmpty())
+			return;
+		Set<T> toRemove = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+		toRemove.addAll(objects);
+		List<T> remaining = new ArrayList<T>(current.size());
+		for (T item : current) {
+			if(toRemove.contains(item) && item.itemNode.getParentNode() == itemNode){
+				itemNode.removeChild(item.itemNode);
+			}else{
+				remaining.add(item);
 			}
 		}
-		property.setValue(objects);
+		if(remaining.size() == current.size())
+			return;
+		if(isChangedInBatch(property)){
+			current.clear();
+			current.addAll(remaining);
+		}else{
+			property.setValue(remaining);
+		}
 	}
 
 	@Override
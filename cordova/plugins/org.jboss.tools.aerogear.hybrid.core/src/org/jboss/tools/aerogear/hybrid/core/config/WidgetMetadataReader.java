@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *       Red Hat, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core.config;
+
+import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.NS_W3C_WIDGET;
+import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_ATTR_ID;
+import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_NAME;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.jboss.tools.aerogear.hybrid.core.HybridCore;
+
+/**
+ * Reads the id and the name of the application from a config.xml 
+ * without building the {@link Widget} model. The document is streamed
+ * and reading stops as soon as both values are found. Use this when 
+ * only the metadata is needed.
+ * 
+ * @author Gorkem Ercan
+ *
+ */
+public class WidgetMetadataReader {
+	
+	private static final XMLInputFactory inputFactory;
+	static{
+		inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+	
+	private String id;
+	private String name;
+	
+	private WidgetMetadataReader(){
+	}
+	
+	/**
+	 * Reads the metadata from the config.xml contents. The stream is 
+	 * closed when this method returns.
+	 * 
+	 * @param contents of config.xml
+	 * @return metadata
+	 * @throws CoreException if the contents can not be read or parsed
+	 */
+	public static WidgetMetadataReader read(InputStream contents) throws CoreException{
+		WidgetMetadataReader metadata = new WidgetMetadataReader();
+		XMLStreamReader reader = null;
+		try{
+			reader = inputFactory.createXMLStreamReader(contents);
+			metadata.parse(reader);
+		}catch(XMLStreamException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Parsing error on config.xml", e));
+		}finally{
+			if(reader != null ){
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					//ignored
+				}
+			}
+			try {
+				contents.close();
+			} catch (IOException e) {
+				//ignored
+			}
+		}
+		return metadata;
+	}
+
+	/*
+	 * The id is on the root element, so reading can stop at the name.
+	 */
+	private void parse(XMLStreamReader reader) throws XMLStreamException{
+		int depth = 0;
+		while(reader.hasNext()){
+			int event = reader.next();
+			if(event == XMLStreamConstants.END_ELEMENT){
+				if(--depth == 0 )
+					return; // end of widget
+				continue;
+			}
+			if(event != XMLStreamConstants.START_ELEMENT)
+				continue;
+			depth++;
+			if(depth == 1){
+				id = reader.getAttributeValue(null, WIDGET_ATTR_ID);
+			}
+			else if(depth == 2 && WIDGET_TAG_NAME.equals(reader.getLocalName())){
+				String namespace = reader.getNamespaceURI();
+				if(namespace == null || namespace.isEmpty() || NS_W3C_WIDGET.equals(namespace)){
+					name = readText(reader);
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the text content of the current element, including the text 
+	 * of any child elements, and leaves the reader on its end element.
+	 */
+	private static String readText(XMLStreamReader reader) throws XMLStreamException{
+		StringBuilder text = new StringBuilder();
+		int depth = 1;
+		while(depth > 0 && reader.hasNext()){
+			int event = reader.next();
+			switch (event) {
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				depth--;
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				text.append(reader.getText());
+				break;
+			default:
+				break;
+			}
+		}
+		return text.toString();
+	}
+	
+	/**
+	 * @return the id attribute of the widget or null
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the text of the name element or null
+	 */
+	public String getName() {
+		return name;
+	}
+	
+}
@@ -22,9 +22,24 @@ import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.W
 import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_ICON;
 import static org.jboss.tools.aerogear.hybrid.core.config.WidgetModelConstants.WIDGET_TAG_LICENSE;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
@@ -36,9 +51,11 @@ import javax.xml.transform.stream.StreamResult;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
 import org.jboss.tools.aerogear.hybrid.core.HybridCore;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 /**
@@ -55,54 +72,338 @@ public class WidgetModel {
 
 	public static final String[] ICON_EXTENSIONS = {"gif", "ico", "jpeg", "jpg", "png","svg" };
 	
-	private static volatile WidgetModel instance;
-	private Map<Document , Widget> models = new HashMap<Document, Widget>();
+	/*
+	 * Factories that come with the model, filled once during class 
+	 * initialization and read only afterwards. 
+	 */
+	private static final Map<QName, Registration<?>> builtins = new HashMap<QName, Registration<?>>();
+	private static final Map<QName, Registration<?>> factories = new ConcurrentHashMap<QName, Registration<?>>();
+	
+	static{
+		registerWidgetFactory(WIDGET_TAG_AUTHOR, Author.class, new ConfigObjectFactory<Author>() {
+			@Override
+			public Author create(Node node) {
+				return new Author(node);
+			}
+		});
+		registerWidgetFactory(WIDGET_TAG_CONTENT, Content.class, new ConfigObjectFactory<Content>() {
+			@Override
+			public Content create(Node node) {
+				return new Content(node);
+			}
+		});
+		registerWidgetFactory(WIDGET_TAG_LICENSE, License.class, new ConfigObjectFactory<License>() {
+			@Override
+			public License create(Node node) {
+				return new License(node);
+			}
+		});
+		registerWidgetFactory(WIDGET_TAG_PREFERENCE, Preference.class, new ConfigObjectFactory<Preference>() {
+			@Override
+			public Preference create(Node node) {
+				return new Preference(node);
+			}
+		});
+		registerWidgetFactory(WIDGET_TAG_ACCESS, Access.class, new ConfigObjectFactory<Access>() {
+			@Override
+			public Access create(Node node) {
+				return new Access(node);
+			}
+		});
+		registerWidgetFactory(WIDGET_TAG_FEATURE, Feature.class, new ConfigObjectFactory<Feature>() {
+			@Override
+			public Feature create(Node node) {
+				return new Feature(node);
+			}
+		});
+		registerWidgetFactory(WIDGET_TAG_ICON, Icon.class, new ConfigObjectFactory<Icon>() {
+			@Override
+			public Icon create(Node node) {
+				return new Icon(node);
+			}
+		});
+		ConfigObjectFactory<Plugin> pluginFactory = new ConfigObjectFactory<Plugin>() {
+			@Override
+			public Plugin create(Node node) {
+				return new Plugin(node);
+			}
+		};
+		registerWidgetFactory(WIDGET_TAG_PLUGIN, Plugin.class, pluginFactory);
+		registerBuiltin(NS_PHONEGAP_1_0, WIDGET_TAG_PLUGIN, Plugin.class, pluginFactory);
+		registerBuiltin(NS_PHONEGAP_1_0, WIDGET_TAG_SPLASH, Splash.class, new ConfigObjectFactory<Splash>() {
+			@Override
+			public Splash create(Node node) {
+				return new Splash(node);
+			}
+		});
+	}
+	
+	private static final class Registration<T extends AbstractConfigObject> {
+		final Class<T> type;
+		final ConfigObjectFactory<? extends T> factory;
+		
+		Registration(Class<T> type, ConfigObjectFactory<? extends T> factory){
+			this.type = type;
+			this.factory = factory;
+		}
+		
+		T create(Node node){
+			// guards against factories registered through raw types
+			return type.cast(factory.create(node));
+		}
+	}
+	
+	/*
+	 * Widget refers to its Document so the values must not be strongly 
+	 * reachable from the map, otherwise the keys are never collected. 
+	 */
+	private final Map<Document , WeakReference<Widget>> models = new WeakHashMap<Document, WeakReference<Widget>>();
+
+	private static final int SAVE_BUFFER_SIZE = 8 * 1024;
+	private static final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+	
+	/*
+	 * Transformers are not thread safe, each thread keeps its own. 
+	 */
+	private static final ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>(){
+		@Override
+		protected Transformer initialValue() {
+			synchronized (transformerFactory) {
+				try {
+					return transformerFactory.newTransformer();
+				} catch (TransformerConfigurationException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+	};
 
+	private static class Holder {
+		static final WidgetModel instance = new WidgetModel();
+	}
+	
 	private WidgetModel(){
 		//no instances
 	}
 	
 	
 	public static WidgetModel getInstance(){
-		if (instance == null ){
-			instance= new WidgetModel();
+		return Holder.instance;
+	}
+
+	/**
+	 * Registers a factory for the elements with the given name. Elements 
+	 * that have a factory are loaded to the {@link Widget} model, the ones 
+	 * that are not one of the known types are available from 
+	 * {@link Widget#getExtensions()}. 
+	 * <p>
+	 * A factory that replaces an existing one must create the same type 
+	 * of objects or a subtype, so that a known element such as 
+	 * <i>preference</i> always loads as a {@link Preference}. For the 
+	 * known elements the type is checked against the default factory.
+	 * </p>
+	 * 
+	 * @param namespace namespace URI of the element, null for no namespace
+	 * @param localName
+	 * @param type type of the objects the factory creates
+	 * @param factory
+	 * @throws IllegalArgumentException if the type is not compatible with 
+	 * the factory that is already registered for the element
+	 */
+	public static <T extends AbstractConfigObject> void registerFactory(String namespace, String localName, Class<T> type, ConfigObjectFactory<? extends T> factory){
+		if(localName == null || type == null || factory == null )
+			throw new IllegalArgumentException("Element name, type and factory can not be null");
+		QName name = new QName(namespace, localName);
+		synchronized (factories) {
+			Registration<?> current = builtins.get(name);
+			if(current == null )
+				current = factories.get(name);
+			if(current != null && !current.type.isAssignableFrom(type))
+				throw new IllegalArgumentException("Factory for " + name + " must create " + current.type.getName() + " but creates " + type.getName());
+			factories.put(name, new Registration<T>(type, factory));
 		}
-		return instance;
+	}
+	
+	/**
+	 * Removes the factory registered for the element. The factories that 
+	 * come with the model can not be removed, if one of them was replaced 
+	 * it is restored.
+	 * 
+	 * @param namespace namespace URI of the element, null for no namespace
+	 * @param localName
+	 */
+	public static void unregisterFactory(String namespace, String localName){
+		QName name = new QName(namespace, localName);
+		synchronized (factories) {
+			Registration<?> builtin = builtins.get(name);
+			if(builtin != null ){
+				factories.put(name, builtin);
+			}else{
+				factories.remove(name);
+			}
+		}
+	}
+	
+	/**
+	 * Creates the model object for the element using the factory 
+	 * registered for it.
+	 * 
+	 * @param namespace namespace URI of the element, null for no namespace
+	 * @param localName
+	 * @param node DOM element
+	 * @return model object or null if there is no factory for the element
+	 */
+	static AbstractConfigObject newConfigObject(String namespace, String localName, Node node){
+		Registration<?> registration = factories.get(new QName(namespace, localName));
+		return registration == null ? null : registration.create(node);
+	}
+	
+	private static <T extends AbstractConfigObject> void registerBuiltin(String namespace, String localName, Class<T> type, ConfigObjectFactory<? extends T> factory){
+		Registration<T> registration = new Registration<T>(type, factory);
+		QName name = new QName(namespace, localName);
+		builtins.put(name, registration);
+		factories.put(name, registration);
+	}
+	
+	/**
+	 * Widget elements are accepted with or without the widgets namespace. 
+	 */
+	private static <T extends AbstractConfigObject> void registerWidgetFactory(String localName, Class<T> type, ConfigObjectFactory<? extends T> factory){
+		registerBuiltin(NS_W3C_WIDGET, localName, type, factory);
+		registerBuiltin(null, localName, type, factory);
 	}
 
+	/**
+	 * Returns the {@link Widget} for the document. If the document was 
+	 * loaded before and its widget is still in use, the existing widget
+	 * is reloaded and returned.
+	 * 
+	 * @param document
+	 * @return widget
+	 */
 	public Widget load(Document document) {
-		Widget root = models.get(document);
-		if(root == null ){
-			root = new Widget(document.getDocumentElement());
-		}else{
-			root.reload(document.getDocumentElement());
+		synchronized (models) {
+			WeakReference<Widget> ref = models.get(document);
+			Widget root = ref == null ? null : ref.get();
+			if(root == null ){
+				root = new Widget(document.getDocumentElement());
+				models.put(document, new WeakReference<Widget>(root));
+			}else{
+				root.reload(document.getDocumentElement());
+			}
+			return root;
 		}
-		models.put(document, root);
-		return root;
 	}
 	
-	public void save(Widget root, File file) throws CoreException{
+	/**
+	 * Returns the number of documents that are still associated with a
+	 * {@link Widget}. Documents that are no longer used are dropped when
+	 * they are garbage collected.
+	 * 
+	 * @return number of documents
+	 */
+	public int getDocumentCount(){
+		synchronized (models) {
+			int count = 0;
+			for (WeakReference<Widget> ref : models.values()) {
+				if(ref.get() != null )
+					count++;
+			}
+			return count;
+		}
+	}
+	
+	/**
+	 * Returns the total number of DOM nodes of the documents that are 
+	 * still associated with a {@link Widget}. This is an approximation 
+	 * of the memory retained by the model and walks all the documents, 
+	 * it is meant for diagnostics.
+	 * 
+	 * @return number of nodes
+	 */
+	public long getRetainedNodeCount(){
+		List<Document> documents = new ArrayList<Document>();
+		synchronized (models) {
+			for (Map.Entry<Document, WeakReference<Widget>> entry : models.entrySet()) {
+				if(entry.getValue().get() != null )
+					documents.add(entry.getKey());
+			}
+		}
+		long count = 0;
+		for (Document document : documents) {
+			count += countNodes(document);
+		}
+		return count;
+	}
+	
+	private static long countNodes(Node node){
+		long count = 1;
+		NamedNodeMap attributes = node.getAttributes();
+		if(attributes != null )
+			count += attributes.getLength();
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			count += countNodes(child);
+		}
+		return count;
+	}
+	
+	/**
+	 * Writes the document of the widget to the file. The file is not 
+	 * touched if it already has the same contents.
+	 * 
+	 * @param root widget to save
+	 * @param file target file
+	 * @return true if the file was written
+	 * @throws CoreException if the document can not be serialized or written
+	 */
+	public boolean save(Widget root, File file) throws CoreException{
+		byte[] contents;
 		try {
 			Source source = new DOMSource(root.itemNode.getOwnerDocument());
-
-			StreamResult result = new StreamResult(file);
-
-			// Write the DOM document to the file
-			TransformerFactory transformerFactory = TransformerFactory
-					.newInstance();
-			Transformer xformer;
-			xformer = transformerFactory.newTransformer();
-			xformer.transform(source, result);
-
-		} catch (TransformerConfigurationException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(SAVE_BUFFER_SIZE);
+			Transformer xformer = transformers.get();
+			try{
+				xformer.transform(source, new StreamResult(out));
+			}finally{
+				xformer.reset();
+			}
+			contents = out.toByteArray();
 		} catch (TransformerException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Error serializing config.xml", e));
+		} catch (IllegalStateException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Error serializing config.xml", e.getCause()));
+		}
+		
+		try{
+			if(hasContents(file, contents))
+				return false;
+			FileOutputStream out = new FileOutputStream(file);
+			try{
+				FileChannel channel = out.getChannel();
+				ByteBuffer buffer = ByteBuffer.wrap(contents);
+				while(buffer.hasRemaining()){
+					channel.write(buffer);
+				}
+			}finally{
+				out.close();
+			}
+			return true;
+		}catch(IOException e){
+			throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, "Error writing "+ file, e));
 		}
-
-
+	}
+	
+	private static boolean hasContents(File file, byte[] contents) throws IOException{
+		if(!file.isFile() || file.length() != contents.length )
+			return false;
+		byte[] existing = new byte[contents.length];
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try{
+			in.readFully(existing);
+		}finally{
+			in.close();
+		}
+		return Arrays.equals(existing, contents);
 	}
 	
 	/**
@@ -219,18 +520,31 @@ public class WidgetModel {
 	}
 	
 	
+	/**
+	 * Creates a model object for the element using its registered 
+	 * {@link ConfigObjectFactory}. This also creates the necessary 
+	 * DOM elements on the {@link Document} associated with the widget.
+	 * The new DOM elements are not inserted to the tree until 
+	 * {@link Widget#addExtension(AbstractConfigObject)} is called
+	 * 
+	 * @param widget - parent widget
+	 * @param namespace namespace URI of the element, null for no namespace
+	 * @param localName 
+	 * @return new model object
+	 * @throws IllegalArgumentException if no factory is registered for the element
+	 */
+	public AbstractConfigObject createObject(Widget widget, String namespace, String localName){
+		return createObject(widget, namespace, localName, AbstractConfigObject.class);
+	}
+	
 	private <T extends AbstractConfigObject> T createObject(Widget widget, String namespace, String tag, Class<T> clazz ){
 		Document doc = widget.itemNode.getOwnerDocument();
 		if (doc == null )
 			throw new IllegalStateException("Widget is not properly constructed");
+		if(factories.get(new QName(namespace, tag)) == null )
+			throw new IllegalArgumentException("No factory is registered for " + new QName(namespace, tag));
 		Element el = doc.createElementNS(namespace, tag);
-		
-		try {
-			return clazz.getDeclaredConstructor(Node.class).newInstance(el);
-		} catch (Exception e){
-			HybridCore.log(IStatus.ERROR, "Error invoking the Node constructor for config model object", e);
-		}
-		return null;
+		return clazz.cast(newConfigObject(namespace, tag, el));
 	}
 	
 }
@@ -24,6 +24,8 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.jboss.tools.aerogear.hybrid.core.HybridCore;
+import org.jboss.tools.aerogear.hybrid.core.util.DirectorySynchronizer;
+import org.jboss.tools.aerogear.hybrid.core.util.DirectorySynchronizer.SyncResult;
 import org.osgi.framework.Bundle;
 /**
  * Abstract class for all the native project generators.
@@ -37,6 +39,7 @@ public abstract class AbstractPlatformProjectGenerator {
 	
 	private IProject project;
 	private File generationRoot;
+	private boolean incrementalSync = true;
 
 	/**
 	 * Constructs a project generator. If generationFolder is null generation folder 
@@ -76,13 +79,28 @@ public abstract class AbstractPlatformProjectGenerator {
 			if( !targetWWW.exists() && !targetWWW.mkdirs() ){
 				throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, " Unable to create www directory for native project "));
 			}
-			directoryCopy( toURL(folder.getLocation().toFile()), toURL(targetWWW));
-			monitor.worked(10);
-			folder = getProject().getFolder("/"+ PlatformConstants.DIR_MERGES+"/"+getTargetShortName());
-			if (folder.exists()){
-				directoryCopy(folder.getLocationURI().toURL() , toURL(targetWWW));
+			IFolder merges = getProject().getFolder("/"+ PlatformConstants.DIR_MERGES+"/"+getTargetShortName());
+			if(incrementalSync){
+				DirectorySynchronizer synchronizer = new DirectorySynchronizer(targetWWW, getWWWManifestFile());
+				synchronizer.addSource(folder.getLocation().toFile());
+				if(merges.exists()){
+					synchronizer.addSource(merges.getLocation().toFile());
+				}
+				SyncResult result = synchronizer.synchronize();
+				monitor.worked(20);
+				if(HybridCore.isTracing(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO)){
+					HybridCore.trace(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO, getTargetShortName()+ " www synchronized " + result);
+				}
+			}else{
+				getWWWManifestFile().delete();
+				int parallelism = Runtime.getRuntime().availableProcessors();
+				directoryCopy( toURL(folder.getLocation().toFile()), toURL(targetWWW), parallelism);
+				monitor.worked(10);
+				if (merges.exists()){
+					directoryCopy(merges.getLocationURI().toURL() , toURL(targetWWW), parallelism);
+				}
+				monitor.worked(10);
 			}
-			monitor.worked(10);
 			replaceCordovaPlatformFiles();
 		}
 		catch (IOException e) {
@@ -91,7 +109,9 @@ public abstract class AbstractPlatformProjectGenerator {
 		finally{
 			monitor.done();
 		}
-		HybridCore.trace(getTargetShortName()+ " project generated in " + Long.toString(System.currentTimeMillis() - start) +" ms.");
+		if(HybridCore.isTracing(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO)){
+			HybridCore.trace(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO, getTargetShortName()+ " project generated in " + Long.toString(System.currentTimeMillis() - start) +" ms.");
+		}
 		return getDestination();
 		
 	}
@@ -131,6 +151,26 @@ public abstract class AbstractPlatformProjectGenerator {
 	protected abstract File getPlatformWWWDirectory();
 	
 	
+	/**
+	 * Sets whether the www and merges directories are synchronized incrementally
+	 * to the native project, only copying the changed files, or copied
+	 * completely on every generation. Defaults to incremental.
+	 *
+	 * @param incremental
+	 */
+	public void setIncrementalSync(boolean incremental){
+		this.incrementalSync = incremental;
+	}
+
+	/**
+	 * Returns the file used to persist the manifest of the files synchronized 
+	 * to the platform www directory.
+	 * @return manifest file
+	 */
+	protected File getWWWManifestFile(){
+		return new File(generationRoot, "."+getTargetShortName()+".wwwsync");
+	}
+
 	protected File getDestination(){
 		return new File(generationRoot,getTargetShortName());
 	}
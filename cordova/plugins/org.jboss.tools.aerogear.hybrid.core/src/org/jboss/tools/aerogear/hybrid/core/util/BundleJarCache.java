@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+/**
+ * Keeps the bundle jars that templates are extracted from open, so that
+ * they are opened and indexed once instead of on every copy.
+ * Each cached jar has a sorted index of its entry names which allows
+ * the entries under a directory to be looked up without scanning the whole jar.
+ * <p>
+ * Cached jars are dropped from the cache when the jar changes on disk, or 
+ * when a bundle that is loaded from the jar is uninstalled or updated. 
+ * Jars are reference counted, a jar returned by {@link #getJar(File)} 
+ * stays open until it is released by its user even if it is dropped 
+ * from the cache in the meantime.
+ * </p>
+ *
+ * @author Gorkem Ercan
+ *
+ */
+public final class BundleJarCache implements BundleListener {
+
+	/**
+	 * An open jar file with its entry index. Users must call 
+	 * {@link #release()} when they are done reading from it.
+	 */
+	public static final class CachedJar {
+		private final File file;
+		private final long lastModified;
+		private final ZipFile zipFile;
+		private final TreeMap<String, ZipEntry> index = new TreeMap<String, ZipEntry>();
+		// the cache holds one reference until the jar is retired
+		private int references = 1;
+		private boolean retired;
+
+		private CachedJar(File file) throws IOException {
+			this.file = file;
+			this.lastModified = file.lastModified();
+			this.zipFile = new ZipFile(file);
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				index.put(entry.getName(), entry);
+			}
+		}
+
+		/**
+		 * Returns the entry with the given name or null.
+		 *
+		 * @param name
+		 * @return
+		 */
+		public ZipEntry getEntry(String name){
+			return index.get(name);
+		}
+
+		/**
+		 * Returns all the entries whose names start with the given prefix,
+		 * in name order. Passing a directory name such as "templates/project/"
+		 * returns the directory and everything below it.
+		 *
+		 * @param prefix
+		 * @return
+		 */
+		public Collection<ZipEntry> getEntries(String prefix){
+			return index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+		}
+
+		public InputStream getInputStream(ZipEntry entry) throws IOException{
+			return zipFile.getInputStream(entry);
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		private boolean isStale(){
+			return file.lastModified() != lastModified;
+		}
+
+		/**
+		 * Releases a reference returned by {@link BundleJarCache#getJar(File)}. 
+		 * The jar is closed when it is no longer cached and all the 
+		 * references are released.
+		 */
+		public void release(){
+			synchronized (this) {
+				if(references == 0 || --references > 0)
+					return;
+			}
+			try {
+				zipFile.close();
+			} catch (IOException e) {
+				//ignored
+			}
+		}
+
+		private synchronized boolean acquire(){
+			if(references == 0)
+				return false;
+			references++;
+			return true;
+		}
+
+		/**
+		 * Drops the cache's reference
+		 */
+		private void retire(){
+			synchronized (this) {
+				if(retired)
+					return;
+				retired = true;
+			}
+			release();
+		}
+	}
+
+	private static final BundleJarCache instance = new BundleJarCache();
+	private final ConcurrentMap<File, CachedJar> jars = new ConcurrentHashMap<File, CachedJar>();
+
+	private BundleJarCache(){
+		//singleton
+	}
+
+	public static BundleJarCache getInstance(){
+		return instance;
+	}
+
+	/**
+	 * Returns the cached jar for the file, opening and indexing it if
+	 * it is not cached yet or has changed since it was cached. The 
+	 * returned jar must be released with {@link CachedJar#release()}.
+	 *
+	 * @param jarFile
+	 * @return
+	 * @throws IOException
+	 */
+	public CachedJar getJar(File jarFile) throws IOException{
+		File key = jarFile.getAbsoluteFile();
+		while(true){
+			CachedJar jar = jars.get(key);
+			if(jar == null ){
+				CachedJar newJar = new CachedJar(key);
+				jar = jars.putIfAbsent(key, newJar);
+				if(jar != null ){
+					newJar.retire();
+					continue;
+				}
+				jar = newJar;
+			}
+			else if(jar.isStale()){
+				if(jars.remove(key, jar)){
+					jar.retire();
+				}
+				continue;
+			}
+			if(jar.acquire())
+				return jar;
+			// retired by another thread, drop it and open again
+			jars.remove(key, jar);
+		}
+	}
+
+	/**
+	 * Removes all the cached jars, jars are closed once 
+	 * their users release them.
+	 */
+	public void clear(){
+		Iterator<CachedJar> iterator = jars.values().iterator();
+		while (iterator.hasNext()) {
+			CachedJar jar = iterator.next();
+			iterator.remove();
+			jar.retire();
+		}
+	}
+
+	@Override
+	public void bundleChanged(BundleEvent event) {
+		if(event.getType() != BundleEvent.UNINSTALLED && event.getType() != BundleEvent.UPDATED )
+			return;
+		Bundle bundle = event.getBundle();
+		String location = bundle.getLocation();
+		if(location == null )
+			return;
+		// Bundle locations are of the form reference:file:plugins/some.bundle_1.0.0.jar
+		location = location.replace('\\', '/');
+		for (Map.Entry<File, CachedJar> entry : jars.entrySet()) {
+			if(location.endsWith("/" + entry.getKey().getName()) || location.endsWith(":" + entry.getKey().getName())){
+				if(jars.remove(entry.getKey(), entry.getValue())){
+					entry.getValue().retire();
+				}
+			}
+		}
+	}
+}
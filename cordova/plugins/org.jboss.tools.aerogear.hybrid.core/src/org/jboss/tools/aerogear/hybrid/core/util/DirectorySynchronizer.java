@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Incrementally synchronizes one or more source directories into a target
+ * directory. A manifest of the files that were copied (size, modification
+ * time and content hash) is kept next to the target, so that subsequent
+ * runs only copy the files that are new or changed and delete the files
+ * that were removed from the sources.
+ * <p>
+ * Source directories are overlaid in the order they are given, a file on a
+ * later source replaces the file with the same relative path on an earlier
+ * one. This matches the way <i>merges</i> override the <i>www</i> contents.
+ * Files on the target that were not put there by a synchronization are
+ * never touched.
+ * </p>
+ *
+ * @author Gorkem Ercan
+ *
+ */
+public class DirectorySynchronizer {
+
+	private static final String MANIFEST_HEADER = "Incremental directory sync manifest";
+	private static final char SEPARATOR = ',';
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Statistics for a completed synchronization.
+	 */
+	public static class SyncResult {
+		private int copiedFiles;
+		private long copiedBytes;
+		private int skippedFiles;
+		private long skippedBytes;
+		private int deletedFiles;
+		private long duration;
+
+		public int getCopiedFiles() {
+			return copiedFiles;
+		}
+		public long getCopiedBytes() {
+			return copiedBytes;
+		}
+		public int getSkippedFiles() {
+			return skippedFiles;
+		}
+		public long getSkippedBytes() {
+			return skippedBytes;
+		}
+		public int getDeletedFiles() {
+			return deletedFiles;
+		}
+		/**
+		 * @return wall time spent on the synchronization in ms.
+		 */
+		public long getDuration() {
+			return duration;
+		}
+
+		@Override
+		public String toString() {
+			return "SyncResult[copied:" + copiedFiles + " files/" + copiedBytes + " bytes skipped:" + skippedFiles
+					+ " files/" + skippedBytes + " bytes deleted:" + deletedFiles + " files time:" + duration + " ms]";
+		}
+	}
+
+	private static class ManifestEntry {
+		long size;
+		long lastModified;
+		String hash;
+
+		static ManifestEntry parse(String value){
+			if(value == null )
+				return null;
+			int first = value.indexOf(SEPARATOR);
+			int second = value.indexOf(SEPARATOR, first+1);
+			if(first < 0 || second < 0 )
+				return null;
+			try{
+				ManifestEntry entry = new ManifestEntry();
+				entry.size = Long.parseLong(value.substring(0, first));
+				entry.lastModified = Long.parseLong(value.substring(first+1, second));
+				entry.hash = value.substring(second+1);
+				return entry;
+			}catch(NumberFormatException e){
+				return null;
+			}
+		}
+
+		String format(){
+			return Long.toString(size) + SEPARATOR + Long.toString(lastModified) + SEPARATOR + hash;
+		}
+	}
+
+	private final File target;
+	private final File manifestFile;
+	private final List<File> sources = new ArrayList<File>();
+
+	/**
+	 * Creates a synchronizer for the target directory.
+	 *
+	 * @param target directory on the file system that will be synchronized
+	 * @param manifestFile file to persist the manifest. It should not be located
+	 * 	under one of the source directories.
+	 */
+	public DirectorySynchronizer(File target, File manifestFile){
+		if(target == null || manifestFile == null )
+			throw new IllegalArgumentException("null target or manifest file");
+		this.target = target;
+		this.manifestFile = manifestFile;
+	}
+
+	/**
+	 * Adds a source directory. Sources added later override the files
+	 * of the sources added earlier. Non existing directories are ignored.
+	 *
+	 * @param source
+	 */
+	public void addSource(File source){
+		if(source == null )
+			throw new IllegalArgumentException("null source");
+		sources.add(source);
+	}
+
+	/**
+	 * Runs the synchronization.
+	 *
+	 * @return statistics for the run
+	 * @throws IOException
+	 */
+	public SyncResult synchronize() throws IOException{
+		long start = System.currentTimeMillis();
+		SyncResult result = new SyncResult();
+		if(!target.exists() && !target.mkdirs()){
+			throw new IOException("Can not create target directory " + target.getPath());
+		}
+
+		// relative path -> source file. Later sources override
+		Map<String, File> files = new TreeMap<String, File>();
+		for (File source : sources) {
+			if(source.isDirectory()){
+				collectFiles(source, "", files);
+			}
+		}
+
+		Properties oldManifest = loadManifest();
+		Map<String, ManifestEntry> newManifest = new LinkedHashMap<String, ManifestEntry>(files.size());
+		for (Map.Entry<String, File> entry : files.entrySet()) {
+			String path = entry.getKey();
+			File src = entry.getValue();
+			File dst = new File(target, path);
+			ManifestEntry old = ManifestEntry.parse(oldManifest.getProperty(path));
+			oldManifest.remove(path);
+
+			long size = src.length();
+			long lastModified = src.lastModified();
+			boolean targetIntact = dst.isFile() && dst.length() == size;
+			if (old != null && targetIntact && old.size == size ){
+				if(old.lastModified == lastModified){
+					result.skippedFiles++;
+					result.skippedBytes += size;
+					newManifest.put(path, old);
+					continue;
+				}
+				// touched but maybe not modified, compare contents
+				String hash = hash(src);
+				if(hash.equals(old.hash)){
+					result.skippedFiles++;
+					result.skippedBytes += size;
+					old.lastModified = lastModified;
+					newManifest.put(path, old);
+					continue;
+				}
+			}
+			ManifestEntry copied = copy(src, dst);
+			copied.lastModified = lastModified;
+			newManifest.put(path, copied);
+			result.copiedFiles++;
+			result.copiedBytes += copied.size;
+		}
+
+		// Whatever is left on the old manifest no longer exists on the sources
+		for (Iterator<Object> iterator = oldManifest.keySet().iterator(); iterator.hasNext();) {
+			String path = (String) iterator.next();
+			File dst = new File(target, path);
+			if(dst.isFile() && dst.delete()){
+				result.deletedFiles++;
+				deleteEmptyParents(dst.getParentFile());
+			}
+		}
+		saveManifest(newManifest);
+		result.duration = System.currentTimeMillis() - start;
+		return result;
+	}
+
+	/**
+	 * Removes the persisted manifest which forces the next synchronization
+	 * to do a full copy.
+	 */
+	public void reset(){
+		if(manifestFile.exists()){
+			manifestFile.delete();
+		}
+	}
+
+	private void collectFiles(File dir, String prefix, Map<String, File> files ){
+		File[] children = dir.listFiles();
+		if(children == null )
+			return;
+		for (File child : children) {
+			String path = prefix + child.getName();
+			if(child.isDirectory()){
+				collectFiles(child, path + "/", files);
+			}else{
+				files.put(path, child);
+			}
+		}
+	}
+
+	private void deleteEmptyParents(File dir){
+		while(dir != null && !dir.equals(target)){
+			String[] list = dir.list();
+			if(list == null || list.length > 0 || !dir.delete())
+				return;
+			dir = dir.getParentFile();
+		}
+	}
+
+	/**
+	 * Copies the file while computing the content hash in the same pass.
+	 */
+	private ManifestEntry copy(File src, File dst) throws IOException{
+		File parent = dst.getParentFile();
+		if(!parent.exists() && !parent.mkdirs()){
+			throw new IOException("Can not create parent directory for " + dst.getPath());
+		}
+		MessageDigest digest = newDigest();
+		InputStream in = null;
+		OutputStream out = null;
+		long size = 0;
+		try{
+			in = new BufferedInputStream(new FileInputStream(src));
+			out = new BufferedOutputStream(new FileOutputStream(dst));
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1){
+				digest.update(buffer, 0, read);
+				out.write(buffer, 0, read);
+				size += read;
+			}
+		}finally{
+			if(out != null )
+				out.close();
+			if(in != null )
+				in.close();
+		}
+		ManifestEntry entry = new ManifestEntry();
+		entry.size = size;
+		entry.hash = toHex(digest.digest());
+		return entry;
+	}
+
+	private String hash(File file) throws IOException{
+		MessageDigest digest = newDigest();
+		InputStream in = null;
+		try{
+			in = new BufferedInputStream(new FileInputStream(file));
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1){
+				digest.update(buffer, 0, read);
+			}
+		}finally{
+			if(in != null )
+				in.close();
+		}
+		return toHex(digest.digest());
+	}
+
+	private Properties loadManifest(){
+		Properties props = new Properties();
+		if(!manifestFile.isFile())
+			return props;
+		InputStream in = null;
+		try{
+			in = new BufferedInputStream(new FileInputStream(manifestFile));
+			props.load(in);
+		}catch(IOException e){
+			// A corrupt manifest only means a full copy
+			props.clear();
+		}finally{
+			if(in != null ){
+				try {
+					in.close();
+				} catch (IOException e) {
+					//ignored
+				}
+			}
+		}
+		return props;
+	}
+
+	private void saveManifest(Map<String, ManifestEntry> manifest) throws IOException{
+		Properties props = new Properties();
+		for (Map.Entry<String, ManifestEntry> entry : manifest.entrySet()) {
+			props.setProperty(entry.getKey(), entry.getValue().format());
+		}
+		File parent = manifestFile.getParentFile();
+		if(parent != null && !parent.exists()){
+			parent.mkdirs();
+		}
+		OutputStream out = null;
+		try{
+			out = new BufferedOutputStream(new FileOutputStream(manifestFile));
+			props.store(out, MANIFEST_HEADER);
+		}finally{
+			if(out != null )
+				out.close();
+		}
+	}
+
+	private static MessageDigest newDigest(){
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is not available", e);
+		}
+	}
+
+	private static String toHex(byte[] bytes){
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i*2] = HEX[(bytes[i] >> 4) & 0x0f];
+			chars[i*2+1] = HEX[bytes[i] & 0x0f];
+		}
+		return new String(chars);
+	}
+}
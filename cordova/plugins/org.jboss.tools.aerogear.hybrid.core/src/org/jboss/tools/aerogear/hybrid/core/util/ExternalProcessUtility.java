@@ -10,11 +10,21 @@
  *******************************************************************************/
 package org.jboss.tools.aerogear.hybrid.core.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.debug.core.DebugEvent;
+import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.DebugPlugin;
+import org.eclipse.debug.core.IDebugEventSetListener;
 import org.eclipse.debug.core.ILaunchConfiguration;
 import org.eclipse.debug.core.IStreamListener;
 import org.eclipse.debug.core.Launch;
@@ -28,12 +38,19 @@ import org.jboss.tools.aerogear.hybrid.core.HybridCore;
  */
 public class ExternalProcessUtility {
 
+	// How often a running process is checked for cancellation. 
+	// Completion is not polled and does not wait for this interval.
+	private static final long CANCEL_CHECK_INTERVAL = 200;
+	// Upper limit for the captured output of a query command, per stream
+	private static final int MAX_QUERY_OUTPUT = 1024 * 1024;
 	
 	public void execAsync ( String commandLine, File workingDirectory, 
 			IStreamListener outStreamListener, 
 			IStreamListener errorStreamListener, String[] envp) throws CoreException{
 		
-		HybridCore.trace("Async Execute command line: "+commandLine);
+		if(HybridCore.isTracing(HybridCore.TRACE_PROCESS, HybridCore.TRACE_INFO)){
+			HybridCore.trace(HybridCore.TRACE_PROCESS, HybridCore.TRACE_INFO, "Async Execute command line: "+commandLine);
+		}
 		String[] cmd = DebugPlugin.parseArguments(commandLine);
 		Process process =DebugPlugin.exec(cmd, workingDirectory, envp);
 		
@@ -43,7 +60,7 @@ public class ExternalProcessUtility {
 		DebugPlugin.getDefault().getLaunchManager().addLaunch(launch);
 		
 		
-		if(HybridCore.DEBUG){
+		if(HybridCore.isTracing(HybridCore.TRACE_PROCESS, HybridCore.TRACE_VERBOSE)){
 			outStreamListener = new TracingStreamListener(outStreamListener);
 			errorStreamListener = new TracingStreamListener(errorStreamListener);
 		}
@@ -56,11 +73,36 @@ public class ExternalProcessUtility {
 		}
 	}
 	
-	public void execSync ( String commandLine, File workingDirectory, 
+	/**
+	 * Runs the command line and waits for it to complete. 
+	 * The process is terminated if the monitor is cancelled.
+	 * 
+	 * @return the exit code of the process
+	 * @see #execSync(String, File, IStreamListener, IStreamListener, IProgressMonitor, String[], ILaunchConfiguration, long)
+	 */
+	public int execSync ( String commandLine, File workingDirectory, 
 			IStreamListener outStreamListener, 
 			IStreamListener errorStreamListener, IProgressMonitor monitor, String[] envp, ILaunchConfiguration launchConfiguration) throws CoreException{
+		return execSync(commandLine, workingDirectory, outStreamListener, errorStreamListener, monitor, envp, launchConfiguration, 0);
+	}
+	
+	/**
+	 * Runs the command line and waits for it to complete. Waiting ends as soon as 
+	 * the process terminates. The process is terminated if the monitor 
+	 * is cancelled or the timeout expires.
+	 * 
+	 * @param timeout in milliseconds, 0 means no timeout
+	 * @return the exit code of the process, or -1 if it is not available
+	 * @throws CoreException if the process can not be started, terminated or the timeout expires
+	 */
+	public int execSync ( String commandLine, File workingDirectory, 
+			IStreamListener outStreamListener, 
+			IStreamListener errorStreamListener, IProgressMonitor monitor, String[] envp, ILaunchConfiguration launchConfiguration, long timeout) throws CoreException{
 		
-		HybridCore.trace("Sync Execute command line: "+commandLine);
+		if(HybridCore.isTracing(HybridCore.TRACE_PROCESS, HybridCore.TRACE_INFO)){
+			HybridCore.trace(HybridCore.TRACE_PROCESS, HybridCore.TRACE_INFO, "Sync Execute command line: "+commandLine);
+		}
+		long start = System.currentTimeMillis();
 		String[] cmd = DebugPlugin.parseArguments(commandLine);
 		Process process =DebugPlugin.exec(cmd, workingDirectory, envp);
 		
@@ -72,9 +114,9 @@ public class ExternalProcessUtility {
 		}
 		
 		//Set tracing 
-		if(HybridCore.DEBUG){
+		if(HybridCore.isTracing(HybridCore.TRACE_PROCESS, HybridCore.TRACE_VERBOSE)){
 			outStreamListener = new TracingStreamListener(outStreamListener);
-			errorStreamListener = new TracingStreamListener(outStreamListener);
+			errorStreamListener = new TracingStreamListener(errorStreamListener);
 		}
 		
 		if( outStreamListener != null ){
@@ -85,18 +127,207 @@ public class ExternalProcessUtility {
 			prcs.getStreamsProxy().getErrorStreamMonitor().addListener(errorStreamListener);
 		}
 		
-		while (!prcs.isTerminated()) {
-			try {
-				if (monitor.isCanceled()) {
+		ProcessTerminationListener terminationListener = new ProcessTerminationListener(prcs);
+		DebugPlugin.getDefault().addDebugEventListener(terminationListener);
+		try{
+			long deadline = timeout > 0 ? start + timeout : Long.MAX_VALUE;
+			while (!terminationListener.await(Math.min(CANCEL_CHECK_INTERVAL, deadline - System.currentTimeMillis()))) {
+				if (monitor != null && monitor.isCanceled()) {
 					prcs.terminate();
 					break;
 				}
-				Thread.sleep(50);
-			} catch (InterruptedException e) {
+				if(System.currentTimeMillis() >= deadline ){
+					prcs.terminate();
+					throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, 
+							"Command did not complete in " + timeout + " ms: " + commandLine));
+				}
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			prcs.terminate();
+		} finally{
+			DebugPlugin.getDefault().removeDebugEventListener(terminationListener);
+		}
+		int exitCode = getExitValue(prcs);
+		if(HybridCore.isTracing(HybridCore.TRACE_PROCESS, HybridCore.TRACE_INFO)){
+			HybridCore.trace(HybridCore.TRACE_PROCESS, HybridCore.TRACE_INFO, "Sync command " + cmd[0] + " exited with " + exitCode + " in " 
+					+ Long.toString(System.currentTimeMillis() - start) + " ms.");
 		}
+		return exitCode;
 	}	
 	
+	/**
+	 * Runs a query command and captures its output. Unlike the execSync 
+	 * and execAsync methods, the process is not registered as a launch, so 
+	 * it does not show on the Debug view or the console. Use it for the 
+	 * short commands whose output is only parsed.
+	 * 
+	 * @param commandLine
+	 * @param workingDirectory may be null
+	 * @param envp may be null
+	 * @param timeout in milliseconds, 0 means no timeout
+	 * @return the result of the command
+	 * @throws CoreException if the process can not be started or the timeout expires 
+	 */
+	public ProcessResult execQuery(String commandLine, File workingDirectory, String[] envp, long timeout) throws CoreException{
+		if(HybridCore.isTracing(HybridCore.TRACE_PROCESS, HybridCore.TRACE_INFO)){
+			HybridCore.trace(HybridCore.TRACE_PROCESS, HybridCore.TRACE_INFO, "Query command line: "+commandLine);
+		}
+		long start = System.currentTimeMillis();
+		String[] cmd = DebugPlugin.parseArguments(commandLine);
+		Process process = DebugPlugin.exec(cmd, workingDirectory, envp);
+		try {
+			process.getOutputStream().close();
+		} catch (IOException e) {
+			//ignored
+		}
+		StreamDrainer out = new StreamDrainer(process.getInputStream(), MAX_QUERY_OUTPUT);
+		StreamDrainer err = new StreamDrainer(process.getErrorStream(), MAX_QUERY_OUTPUT);
+		out.start();
+		err.start();
+		int exitCode;
+		try{
+			long deadline = timeout > 0 ? start + timeout : 0;
+			if(!out.finish(deadline) || !err.finish(deadline)){
+				process.destroy();
+				throw new CoreException(new Status(IStatus.ERROR, HybridCore.PLUGIN_ID, 
+						"Command did not complete in " + timeout + " ms: " + commandLine));
+			}
+			exitCode = process.waitFor();
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			process.destroy();
+			throw new CoreException(new Status(IStatus.CANCEL, HybridCore.PLUGIN_ID, "Interrupted while running " + commandLine, e));
+		}
+		ProcessResult result = new ProcessResult(exitCode, out.getBytes(), err.getBytes(), 
+				out.isTruncated() || err.isTruncated(), System.currentTimeMillis() - start);
+		if(HybridCore.isTracing(HybridCore.TRACE_PROCESS, HybridCore.TRACE_INFO)){
+			HybridCore.trace(HybridCore.TRACE_PROCESS, HybridCore.TRACE_INFO, "Query command " + cmd[0] + " " + result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Convenience method for {@link #execQuery(String, File, String[], long)} 
+	 * without a timeout.
+	 */
+	public ProcessResult execQuery(String commandLine, File workingDirectory, String[] envp) throws CoreException{
+		return execQuery(commandLine, workingDirectory, envp, 0);
+	}
+	
+	private static int getExitValue(IProcess process){
+		try {
+			return process.getExitValue();
+		} catch (DebugException e) {
+			return -1;
+		}
+	}
 	
+	/**
+	 * Releases waiting threads when the terminate event for the process is fired.
+	 */
+	private static class ProcessTerminationListener implements IDebugEventSetListener{
+		private final IProcess process;
+		private final CountDownLatch latch = new CountDownLatch(1);
+		
+		ProcessTerminationListener(IProcess process){
+			this.process = process;
+		}
+		
+		@Override
+		public void handleDebugEvents(DebugEvent[] events) {
+			for (DebugEvent event : events) {
+				if(event.getKind() == DebugEvent.TERMINATE && event.getSource() == process ){
+					latch.countDown();
+					return;
+				}
+			}
+		}
+		
+		/**
+		 * @return true if the process has terminated
+		 */
+		boolean await(long timeout) throws InterruptedException{
+			// The event may have fired before this listener was added
+			if(process.isTerminated())
+				return true;
+			return latch.await(Math.max(timeout, 0), TimeUnit.MILLISECONDS) || process.isTerminated();
+		}
+	}
+	
+	/**
+	 * Reads a process stream to a size limited buffer on its own thread. 
+	 * Output over the limit is read and dropped so that the process never 
+	 * blocks on a full pipe.
+	 */
+	private static class StreamDrainer extends Thread{
+		private final InputStream stream;
+		private final int limit;
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+		private boolean truncated;
+		
+		StreamDrainer(InputStream stream, int limit){
+			super("External process output reader");
+			setDaemon(true);
+			this.stream = stream;
+			this.limit = limit;
+		}
+		
+		@Override
+		public void run() {
+			byte[] bytes = new byte[4096];
+			int read;
+			try{
+				while((read = stream.read(bytes)) != -1){
+					synchronized (buffer) {
+						int room = limit - buffer.size();
+						if(read > room){
+							truncated = true;
+						}
+						if(room > 0 ){
+							buffer.write(bytes, 0, Math.min(read, room));
+						}
+					}
+				}
+			}catch(IOException e){
+				//stream is closed when the process is destroyed
+			}finally{
+				try {
+					stream.close();
+				} catch (IOException e) {
+					//ignored
+				}
+			}
+		}
+		
+		/**
+		 * Waits until the stream is fully read. 
+		 * @param deadline in ms, 0 for no deadline 
+		 * @return false if the deadline passed before the end of the stream
+		 */
+		boolean finish(long deadline) throws InterruptedException{
+			if(deadline == 0 ){
+				join();
+				return true;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+			if(remaining > 0 ){
+				join(remaining);
+			}
+			return !isAlive();
+		}
+		
+		byte[] getBytes(){
+			synchronized (buffer) {
+				return buffer.toByteArray();
+			}
+		}
+		
+		boolean isTruncated(){
+			synchronized (buffer) {
+				return truncated;
+			}
+		}
+	}
 	
 }
@@ -10,30 +10,29 @@
  ******************************************************************************/
 package org.jboss.tools.aerogear.hybrid.core.util;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
-import java.util.Enumeration;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
+import org.jboss.tools.aerogear.hybrid.core.HybridCore;
+import org.jboss.tools.aerogear.hybrid.core.util.BundleJarCache.CachedJar;
+import org.jboss.tools.aerogear.hybrid.core.util.ParallelDirectoryCopier.CopyResult;
+import org.jboss.tools.aerogear.hybrid.core.util.TemplateEngine.CompiledTemplate;
 /**
  * Utilities for working with files on the file system and inside bundles.
  * 
@@ -73,15 +72,52 @@ public final class FileUtils {
 			copyFile(srcFile, dstFile);
 			
 		}else if("jar".equals(source.getProtocol())){
-			ZipFile zipFile = getZipFile(source);
+			CachedJar jar = getJar(source);
 			String file = source.getFile();
 			int exclamation = file.indexOf('!');
 			String jarLocation = file.substring(exclamation + 2); // "/some/path/"
-			copyFromZip(zipFile, jarLocation, dstFile);
+			try{
+				copyFromZip(jar, jarLocation, dstFile);
+			}finally{
+				release(jar);
+			}
 		}	
 		
 	}
 	
+	/**
+	 * Same as {@link #directoryCopy(URL, URL)} but copies the files of a 
+	 * file system source with the given number of threads. Jar sources are 
+	 * always copied sequentially.
+	 * 
+	 * @param source - directory on the file system or jar file
+	 * @param destination - a directory on the file system
+	 * @param parallelism - number of threads to use, 1 means sequential copy
+	 * @throws IOException
+	 * @see ParallelDirectoryCopier
+	 */
+	public static void directoryCopy(URL source, URL destination, int parallelism) throws IOException{
+		if(parallelism <= 1 ){
+			directoryCopy(source, destination);
+			return;
+		}
+		checkCanCopy(source, destination);
+		URL srcURL = getFileURL(source);
+		if(!"file".equals(srcURL.getProtocol())){
+			directoryCopy(source, destination);
+			return;
+		}
+		File dstFile = new File(getFileURL(destination).getFile());
+		if(!dstFile.exists() && !dstFile.mkdir() ){
+			return;
+		}
+		ParallelDirectoryCopier copier = new ParallelDirectoryCopier(parallelism);
+		CopyResult result = copier.copy(new File(srcURL.getFile()), dstFile);
+		if(HybridCore.isTracing(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO)){
+			HybridCore.trace(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO, "Parallel directory copy of " + srcURL + " " + result);
+		}
+	}
+	
 	/**
 	 * Copies the contents of source file to the destination file.
 	 * Source can be a file on the file system or a jar file.
@@ -111,11 +147,15 @@ public final class FileUtils {
 			copyFile(srcFile, dstFile);
 			
 		}else if("jar".equals(source.getProtocol())){
-			ZipFile zipFile = getZipFile(source);
+			CachedJar jar = getJar(source);
 			String file = source.getFile();
 			int exclamation = file.indexOf('!');
 			String jarLocation = file.substring(exclamation + 2); // remove jar separator !/ 
-			copyFromZip(zipFile, jarLocation, dstFile);
+			try{
+				copyFromZip(jar, jarLocation, dstFile);
+			}finally{
+				release(jar);
+			}
 		}	
 
 	}
@@ -123,7 +163,8 @@ public final class FileUtils {
 	/**
 	 * Copies the contents of a source file to the destination file. 
 	 * It replaces the value pairs passed on the templatesValues while 
-	 * copying. 
+	 * copying. The rest of the contents, including the line endings, 
+	 * are copied unchanged. 
 	 * 
 	 * @param source  file on the file system or jar file
 	 * @param destination file on the file system
@@ -143,44 +184,40 @@ public final class FileUtils {
 		source = getFileURL(source);
 		destination = getFileURL(destination);
 		File dstFile = new File(destination.getFile());
-		BufferedReader in = null;
-		BufferedWriter out = null;
-		try{
-			out = new BufferedWriter(new FileWriter(dstFile));
-	
-			if("file".equals(source.getProtocol())){
-				File srcFile = new File(source.getFile());
-				in = new BufferedReader(new FileReader(srcFile));
+		TemplateEngine engine = TemplateEngine.getInstance();
+		Set<String> keys = templateValues.keySet();
+		CompiledTemplate template = null;
+		if("file".equals(source.getProtocol())){
+			File srcFile = new File(source.getFile());
+			long stamp = srcFile.lastModified();
+			template = engine.getTemplate(source, stamp, keys);
+			if(template == null ){
+				template = engine.compile(source, stamp, readFully(new FileInputStream(srcFile)), keys);
 			}
-			else if("jar".equals(source.getProtocol())){
-				ZipFile zipFile = getZipFile(source);
-				String file = source.getFile();
-				int exclamation = file.indexOf('!');
-				String jarLocation = file.substring(exclamation + 2); // remove jar separator !/ 
-				ZipEntry zipEntry = zipFile.getEntry(jarLocation);
+		}
+		else if("jar".equals(source.getProtocol())){
+			CachedJar jar = getJar(source);
+			String file = source.getFile();
+			int exclamation = file.indexOf('!');
+			String jarLocation = file.substring(exclamation + 2); // remove jar separator !/ 
+			try{
+				ZipEntry zipEntry = jar == null ? null : jar.getEntry(jarLocation);
 				if(zipEntry == null ){
 					throw new IllegalArgumentException(source + " can not be found on the zip file");
 				}
-				InputStream zipStream = zipFile.getInputStream(zipEntry);
-				in = new BufferedReader(new InputStreamReader(zipStream));
+				long stamp = jar.getFile().lastModified();
+				template = engine.getTemplate(source, stamp, keys);
+				if(template == null ){
+					template = engine.compile(source, stamp, readFully(jar.getInputStream(zipEntry)), keys);
+				}
+			}finally{
+				release(jar);
 			}
-			
-			 String line;
-	         while ((line = in.readLine()) != null) {
-	                 for (Map.Entry<String, String> entry : templateValues.entrySet()) {
-	                     line = line.replace(entry.getKey(), entry.getValue());
-	                 }
-	                 out.write(line);
-	                 out.newLine();
-             }
-		}finally{
-			if (out != null)
-				out.close();
-			if (in != null )
-				in.close();
 		}
-		
-		
+		if(template == null ){
+			throw new IllegalArgumentException(source + " is not a file or jar URL");
+		}
+		template.render(templateValues, dstFile);
 	}
 	
 	
@@ -224,7 +261,16 @@ public final class FileUtils {
 			return null;
 		}
 	}
-	private static ZipFile getZipFile( URL url ){
+	private static void release(CachedJar jar){
+		if(jar != null ){
+			jar.release();
+		}
+	}
+	
+	/**
+	 * Returns the jar for the URL, the jar must be released after use.
+	 */
+	private static CachedJar getJar( URL url ){
 		if(!"jar".equals(url.getProtocol()))
 			return null;
 		String file = url.getFile();
@@ -242,8 +288,7 @@ public final class FileUtils {
 			return null;
 		
 		try{
-			ZipFile zipFile = new ZipFile(pluginJar);
-			return zipFile;
+			return BundleJarCache.getInstance().getJar(pluginJar);
 		}
 		catch(IOException e){
 			return null;
@@ -252,31 +297,39 @@ public final class FileUtils {
 	}
 	
 	
-	private static void copyFromZip(ZipFile zipFile, String locationInBundle,
+	private static void copyFromZip(CachedJar jar, String locationInBundle,
 			File destination) throws IOException{
+		if(jar == null )
+			return;
+		for (ZipEntry zipEntry : jar.getEntries(locationInBundle)) {
+			String path = zipEntry.getName().substring(locationInBundle.length());
+			File file = new File(destination, path);
 
-	       Enumeration<? extends ZipEntry> entries = zipFile.entries();
-	        while (entries.hasMoreElements()) {
-	            ZipEntry zipEntry = entries.nextElement();
-	            if (zipEntry.getName().startsWith(locationInBundle)) {
-	            	
-	            	String path = zipEntry.getName().substring(locationInBundle.length());
-	            	File file = new File(destination, path);
+			if (!zipEntry.isDirectory()) {
+				createFileFromZipFile(file, jar, zipEntry);
+			} else {
+				if( !file.exists() ){
+					file.mkdir();
+				}
+			}
+		}
+	}
 
-	            	if (!zipEntry.isDirectory()) {					
-	                	createFileFromZipFile(file, zipFile, zipEntry);
-					} else {
-						if( !file.exists() ){
-							file.mkdir();
-						}
-					}
-	            }
-	        }
-	
-		
+	private static byte[] readFully(InputStream in) throws IOException{
+		try{
+			ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1){
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}finally{
+			in.close();
+		}
 	}
 
-	private static void createFileFromZipFile(File file, ZipFile zipFile,
+	private static void createFileFromZipFile(File file, CachedJar jar,
 			ZipEntry zipEntry) throws IOException {
 		if(!file.getParentFile().exists() && !file.getParentFile().mkdirs()){
 			throw new IOException("Can not create parent directory for " + file.toString() );
@@ -288,7 +341,7 @@ public final class FileUtils {
 		try {
 			fout = new FileOutputStream(file);
 			out = fout.getChannel();
-			in = zipFile.getInputStream(zipEntry);
+			in = jar.getInputStream(zipEntry);
 			out.transferFrom(Channels.newChannel(in), 0, Integer.MAX_VALUE);
 		} finally {
 			if (out != null)
@@ -321,28 +374,45 @@ public final class FileUtils {
 	    	}else{
 	    		file = new File(target, source.getName());
 	    	}
-	
-	    	FileChannel out = null;
-	        FileChannel in = null;
-	        try {
-	        	if(!file.exists()){
-	        		file.createNewFile();
-	        	}
-	            
-	        	 out = new FileOutputStream(file).getChannel();
-	        	 in = new FileInputStream(source).getChannel();
-	        	in.transferTo(0, in.size(), out);
-	        }
-	        catch ( IOException e){
-	        	e.printStackTrace();
-	        	throw e;
-	        }
-	        finally {
-	        	if(out != null )
-	        		out.close();
-	        	if(in != null )
-	        		in.close();
-	        }
+	    	copyFileContents(source, file);
 	    }
 	}
+	
+	/**
+	 * Copies a single file, shared by the sequential copy and the 
+	 * {@link ParallelDirectoryCopier}.
+	 * 
+	 * @return number of bytes copied
+	 */
+	static long copyFileContents(File source, File file) throws IOException{
+		FileChannel out = null;
+		FileChannel in = null;
+		try {
+			if(!file.exists()){
+				file.createNewFile();
+			}
+			out = new FileOutputStream(file).getChannel();
+			in = new FileInputStream(source).getChannel();
+			long size = in.size();
+			long position = 0;
+			while(position < size){
+				long transferred = in.transferTo(position, size - position, out);
+				if(transferred <= 0 ){// source was truncated while copying
+					break;
+				}
+				position += transferred;
+			}
+			return position;
+		}
+		catch ( IOException e){
+			e.printStackTrace();
+			throw e;
+		}
+		finally {
+			if(out != null )
+				out.close();
+			if(in != null )
+				in.close();
+		}
+	}
 }
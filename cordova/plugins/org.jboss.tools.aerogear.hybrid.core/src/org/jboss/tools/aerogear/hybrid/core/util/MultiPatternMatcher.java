@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton that finds any number of patterns in a
+ * single pass over the text. The matcher is immutable and can be shared
+ * between threads, the scan state is a plain int that the caller keeps, which
+ * also allows a scan to continue over text that arrives in chunks.
+ * <p>
+ * Typical use
+ * <pre>
+ * int state = matcher.getInitialState();
+ * for (int i = 0; i &lt; text.length(); i++) {
+ *     state = matcher.next(state, text.charAt(i));
+ *     int match = matcher.getMatch(state);
+ *     if (match &gt;= 0) {
+ *         // pattern "match" ends at i
+ *     }
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Gorkem Ercan
+ *
+ */
+public final class MultiPatternMatcher {
+
+	private static final int ASCII = 128;
+	private static final char[] NO_KEYS = new char[0];
+	private static final int[] NO_TARGETS = new int[0];
+
+	private final String[] patterns;
+	// Full transition table for ASCII characters
+	private final int[][] asciiTransitions;
+	// goto function for the remaining characters, keys are sorted
+	private final char[][] childKeys;
+	private final int[][] childTargets;
+	private final int[] failure;
+	private final int[] matches;
+
+	/**
+	 * Builds the automaton for the given patterns.
+	 *
+	 * @param patterns non empty strings to search for
+	 * @throws IllegalArgumentException if no patterns or an empty pattern is given
+	 */
+	public MultiPatternMatcher(String... patterns){
+		if(patterns == null || patterns.length == 0 )
+			throw new IllegalArgumentException("No patterns to match");
+		this.patterns = patterns.clone();
+
+		// Build the trie
+		List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character,Integer>>();
+		List<Integer> terminals = new ArrayList<Integer>();
+		trie.add(new TreeMap<Character, Integer>());
+		terminals.add(Integer.valueOf(-1));
+		for (int i = 0; i < this.patterns.length; i++) {
+			String pattern = this.patterns[i];
+			if(pattern == null || pattern.length() == 0 )
+				throw new IllegalArgumentException("Patterns can not be empty");
+			int node = 0;
+			for (int j = 0; j < pattern.length(); j++) {
+				Character c = Character.valueOf(pattern.charAt(j));
+				Integer child = trie.get(node).get(c);
+				if(child == null ){
+					child = Integer.valueOf(trie.size());
+					trie.add(new TreeMap<Character, Integer>());
+					terminals.add(Integer.valueOf(-1));
+					trie.get(node).put(c, child);
+				}
+				node = child.intValue();
+			}
+			if(terminals.get(node).intValue() < 0 ){
+				terminals.set(node, Integer.valueOf(i));
+			}
+		}
+
+		int size = trie.size();
+		childKeys = new char[size][];
+		childTargets = new int[size][];
+		for (int i = 0; i < size; i++) {
+			TreeMap<Character, Integer> children = trie.get(i);
+			if(children.isEmpty()){
+				childKeys[i] = NO_KEYS;
+				childTargets[i] = NO_TARGETS;
+				continue;
+			}
+			childKeys[i] = new char[children.size()];
+			childTargets[i] = new int[children.size()];
+			int j = 0;
+			for (Map.Entry<Character, Integer> entry : children.entrySet()) {
+				childKeys[i][j] = entry.getKey().charValue();
+				childTargets[i][j] = entry.getValue().intValue();
+				j++;
+			}
+		}
+
+		// Failure links, outputs and the ASCII table, breadth first
+		failure = new int[size];
+		matches = new int[size];
+		asciiTransitions = new int[size][];
+		matches[0] = -1;
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+		queue.add(Integer.valueOf(0));
+		while (!queue.isEmpty()) {
+			int node = queue.removeFirst().intValue();
+			int[] table = new int[ASCII];
+			for (int c = 0; c < ASCII; c++) {
+				int child = child(node, (char) c);
+				if(child >= 0 ){
+					table[c] = child;
+				}else{
+					table[c] = node == 0 ? 0 : asciiTransitions[failure[node]][c];
+				}
+			}
+			asciiTransitions[node] = table;
+			for (int i = 0; i < childKeys[node].length; i++) {
+				char c = childKeys[node][i];
+				int child = childTargets[node][i];
+				if(node == 0 ){
+					failure[child] = 0;
+				}else{
+					int f = failure[node];
+					while (f != 0 && child(f, c) < 0) {
+						f = failure[f];
+					}
+					int target = child(f, c);
+					failure[child] = target >= 0 ? target : 0;
+				}
+				int terminal = terminals.get(child).intValue();
+				matches[child] = terminal >= 0 ? terminal : matches[failure[child]];
+				queue.add(Integer.valueOf(child));
+			}
+		}
+	}
+
+	/**
+	 * @return the state to start a scan from
+	 */
+	public int getInitialState(){
+		return 0;
+	}
+
+	/**
+	 * Advances the automaton by one character.
+	 *
+	 * @param state current state
+	 * @param c next character of the text
+	 * @return the new state
+	 */
+	public int next(int state, char c){
+		if(c < ASCII)
+			return asciiTransitions[state][c];
+		int node = state;
+		while(true){
+			int child = child(node, c);
+			if(child >= 0 )
+				return child;
+			if(node == 0 )
+				return 0;
+			node = failure[node];
+		}
+	}
+
+	/**
+	 * Returns the index of the longest pattern that ends at the
+	 * given state, or -1 if no pattern ends there.
+	 *
+	 * @param state
+	 * @return pattern index or -1
+	 */
+	public int getMatch(int state){
+		return matches[state];
+	}
+
+	public String getPattern(int index){
+		return patterns[index];
+	}
+
+	public int getPatternCount(){
+		return patterns.length;
+	}
+
+	private int child(int node, char c){
+		char[] keys = childKeys[node];
+		int i = keys.length < 8 ? linearSearch(keys, c) : Arrays.binarySearch(keys, c);
+		return i >= 0 ? childTargets[node][i] : -1;
+	}
+
+	private static int linearSearch(char[] keys, char c){
+		for (int i = 0; i < keys.length; i++) {
+			if(keys[i] == c )
+				return i;
+		}
+		return -1;
+	}
+}
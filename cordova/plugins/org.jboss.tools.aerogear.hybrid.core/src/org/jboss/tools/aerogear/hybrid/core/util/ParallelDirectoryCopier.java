@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies the contents of a directory to another directory using a
+ * pool of worker threads. Each directory is walked by its own task which
+ * in turn creates the sub-directories and hands out a task per file and
+ * sub-directory, so many small files are copied concurrently instead of
+ * one after the other.
+ * <p>
+ * The resulting tree is the same as the one created by the sequential
+ * {@link FileUtils#directoryCopy(java.net.URL, java.net.URL)}.
+ * </p>
+ *
+ * @author Gorkem Ercan
+ *
+ */
+public class ParallelDirectoryCopier {
+
+	/**
+	 * Statistics for a completed copy.
+	 */
+	public static class CopyResult{
+		private final int files;
+		private final long bytes;
+		private final long duration;
+
+		private CopyResult(int files, long bytes, long duration){
+			this.files = files;
+			this.bytes = bytes;
+			this.duration = duration;
+		}
+
+		public int getCopiedFiles() {
+			return files;
+		}
+
+		public long getCopiedBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return wall time spent on the copy in ms.
+		 */
+		public long getDuration() {
+			return duration;
+		}
+
+		@Override
+		public String toString() {
+			return "CopyResult[files:" + files + " bytes:" + bytes + " time:" + duration + " ms]";
+		}
+	}
+
+	private final int parallelism;
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicInteger copiedFiles = new AtomicInteger();
+	private final AtomicLong copiedBytes = new AtomicLong();
+	private volatile IOException failure;
+	private ExecutorService executor;
+
+	/**
+	 * Creates a copier that uses as many threads as there are
+	 * available processors.
+	 */
+	public ParallelDirectoryCopier(){
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a copier that uses the given number of threads.
+	 *
+	 * @param parallelism number of threads to use
+	 * @throws IllegalArgumentException if parallelism is less than 1
+	 */
+	public ParallelDirectoryCopier(int parallelism){
+		if(parallelism < 1 )
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Copies the contents of source directory into the destination directory.
+	 * Destination is created if it does not exist. A copier instance can only
+	 * run one copy at a time.
+	 *
+	 * @param source directory on the file system
+	 * @param destination directory on the file system
+	 * @return statistics for the copy
+	 * @throws IOException if any of the files can not be copied
+	 */
+	public synchronized CopyResult copy(File source, File destination) throws IOException{
+		if(source == null || destination == null )
+			throw new IllegalArgumentException("null source or destination value");
+		if(!source.isDirectory())
+			throw new IllegalArgumentException(source + " is not a directory");
+		if(!destination.exists() && !destination.mkdirs()){
+			throw new IOException("Can not create directory " + destination.getPath());
+		}
+		long start = System.currentTimeMillis();
+		pending.set(0);
+		copiedFiles.set(0);
+		copiedBytes.set(0);
+		failure = null;
+		executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new CopierThreadFactory());
+		try{
+			submit(new DirectoryTask(source, destination));
+			synchronized (pending) {
+				while(pending.get() > 0 ){
+					pending.wait();
+				}
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Directory copy was interrupted");
+		}finally{
+			executor.shutdownNow();
+			executor = null;
+		}
+		if(failure != null ){
+			throw failure;
+		}
+		return new CopyResult(copiedFiles.get(), copiedBytes.get(), System.currentTimeMillis() - start);
+	}
+
+	private void submit(CopyTask task){
+		pending.incrementAndGet();
+		try{
+			executor.execute(task);
+		}catch(RejectedExecutionException e){
+			done();
+		}
+	}
+
+	private void done(){
+		if(pending.decrementAndGet() == 0){
+			synchronized (pending) {
+				pending.notifyAll();
+			}
+		}
+	}
+
+	private void fail(IOException e){
+		if(failure == null ){
+			failure = e;
+		}
+	}
+
+	private abstract class CopyTask implements Runnable{
+		protected final File source;
+		protected final File target;
+
+		CopyTask(File source, File target){
+			this.source = source;
+			this.target = target;
+		}
+
+		@Override
+		public final void run() {
+			try{
+				if(failure == null ){
+					execute();
+				}
+			}catch(IOException e){
+				fail(e);
+			}finally{
+				done();
+			}
+		}
+
+		protected abstract void execute() throws IOException;
+	}
+
+	private class DirectoryTask extends CopyTask{
+
+		DirectoryTask(File source, File target) {
+			super(source, target);
+		}
+
+		@Override
+		protected void execute() throws IOException {
+			File[] children = source.listFiles();
+			if(children == null )
+				return;
+			for (File child : children) {
+				File file = new File(target, child.getName());
+				if(child.isDirectory()){
+					if(!file.exists() && !file.mkdir()){
+						throw new IOException("Can not create directory " + file.getPath());
+					}
+					submit(new DirectoryTask(child, file));
+				}else{
+					submit(new FileTask(child, file));
+				}
+			}
+		}
+	}
+
+	private class FileTask extends CopyTask{
+
+		FileTask(File source, File target) {
+			super(source, target);
+		}
+
+		@Override
+		protected void execute() throws IOException {
+			copiedBytes.addAndGet(FileUtils.copyFileContents(source, target));
+			copiedFiles.incrementAndGet();
+		}
+	}
+
+	private static class CopierThreadFactory implements ThreadFactory{
+		private final AtomicInteger count = new AtomicInteger();
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Hybrid directory copy " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *       Red Hat, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core.util;
+
+/**
+ * Result of a command run with
+ * {@link ExternalProcessUtility#execQuery(String, java.io.File, String[], long)}.
+ * Output is captured as bytes and limited in size, {@link #isTruncated()}
+ * tells if any output was dropped.
+ *
+ * @author Gorkem Ercan
+ *
+ */
+public class ProcessResult {
+
+	private final int exitCode;
+	private final byte[] output;
+	private final byte[] errorOutput;
+	private final boolean truncated;
+	private final long duration;
+
+	ProcessResult(int exitCode, byte[] output, byte[] errorOutput, boolean truncated, long duration) {
+		this.exitCode = exitCode;
+		this.output = output;
+		this.errorOutput = errorOutput;
+		this.truncated = truncated;
+		this.duration = duration;
+	}
+
+	public int getExitCode() {
+		return exitCode;
+	}
+
+	/**
+	 * @return true if the process exited with 0
+	 */
+	public boolean isOK(){
+		return exitCode == 0;
+	}
+
+	/**
+	 * @return standard output of the process, decoded with the default charset
+	 */
+	public String getOutput() {
+		return new String(output);
+	}
+
+	/**
+	 * @return standard error of the process, decoded with the default charset
+	 */
+	public String getErrorOutput() {
+		return new String(errorOutput);
+	}
+
+	public byte[] getOutputBytes() {
+		return output;
+	}
+
+	public byte[] getErrorOutputBytes() {
+		return errorOutput;
+	}
+
+	/**
+	 * @return true if either output exceeded the limit and was cut
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * @return wall time from start to exit in ms.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	@Override
+	public String toString() {
+		return "ProcessResult[exit:" + exitCode + " output:" + output.length + " bytes error:" + errorOutput.length
+				+ " bytes" + (truncated ? " (truncated)" : "") + " time:" + duration + " ms]";
+	}
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core.util;
+
+/**
+ * Looks for the first occurrence of any of the patterns on text that
+ * arrives in chunks. The partial match state is carried from one chunk
+ * to the next so a pattern split over two chunks is found, and the memory
+ * used does not grow with the text. Once a pattern is found the rest of
+ * the text is ignored.
+ *
+ * @author Gorkem Ercan
+ * @see MultiPatternMatcher
+ */
+public class StreamingTextMatcher {
+
+	/**
+	 * Notified once, when the first pattern is found.
+	 */
+	public interface MatchListener {
+		/**
+		 * @param matcher
+		 * @param patternIndex index of the pattern that is found
+		 */
+		void matched(StreamingTextMatcher matcher, int patternIndex);
+	}
+
+	private final MultiPatternMatcher patterns;
+	private final MatchListener listener;
+	private int state;
+	private volatile int match = -1;
+
+	/**
+	 * @param patterns non empty strings to look for
+	 */
+	public StreamingTextMatcher(String... patterns){
+		this(new MultiPatternMatcher(patterns), null);
+	}
+
+	/**
+	 * @param patterns the patterns, can be shared by several matchers
+	 * @param listener notified on the first match, may be null
+	 */
+	public StreamingTextMatcher(MultiPatternMatcher patterns, MatchListener listener){
+		if(patterns == null )
+			throw new IllegalArgumentException("No patterns to match");
+		this.patterns = patterns;
+		this.listener = listener;
+		this.state = patterns.getInitialState();
+	}
+
+	/**
+	 * Scans the next chunk of the text.
+	 *
+	 * @param text
+	 * @return true if a pattern is found on this or a previous chunk
+	 */
+	public boolean append(CharSequence text){
+		if(match >= 0 )
+			return true;
+		int found = -1;
+		synchronized (this) {
+			if(match >= 0 )
+				return true;
+			int s = state;
+			for (int i = 0; i < text.length(); i++) {
+				s = patterns.next(s, text.charAt(i));
+				found = patterns.getMatch(s);
+				if(found >= 0 )
+					break;
+			}
+			state = s;
+			if(found < 0 )
+				return false;
+			match = found;
+		}
+		if(listener != null ){
+			listener.matched(this, found);
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if a pattern is found
+	 */
+	public boolean isMatched(){
+		return match >= 0;
+	}
+
+	/**
+	 * @return index of the pattern that is found, -1 if none
+	 */
+	public int getMatchIndex(){
+		return match;
+	}
+
+	/**
+	 * @return the pattern that is found, null if none
+	 */
+	public String getMatchedPattern(){
+		int index = match;
+		return index < 0 ? null : patterns.getPattern(index);
+	}
+
+	/**
+	 * Forgets the partial and completed matches so the matcher can be
+	 * used on a new text.
+	 */
+	public synchronized void reset(){
+		state = patterns.getInitialState();
+		match = -1;
+	}
+}
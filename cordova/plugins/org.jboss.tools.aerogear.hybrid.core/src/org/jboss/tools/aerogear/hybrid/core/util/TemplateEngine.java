@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Red Hat, Inc. - initial API and implementation
+ ******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Replaces template keys on template files. The template contents are
+ * scanned once with a {@link MultiPatternMatcher} for all the keys and
+ * split into literal segments and placeholders. The compiled templates are
+ * cached per source URL and set of keys so that rendering the same
+ * template again does not read or scan the source.
+ * <p>
+ * Templates are handled as bytes, everything other than the keys,
+ * including the line endings, is copied as is. Keys and values are
+ * encoded as UTF-8.
+ * </p>
+ *
+ * @author Gorkem Ercan
+ * @see FileUtils#templatedFileCopy(URL, URL, Map)
+ */
+public final class TemplateEngine {
+
+	private static final String UTF8 = "UTF-8";
+	// Maps the bytes 1:1 to chars so that the char matcher can scan bytes
+	private static final String LATIN1 = "ISO-8859-1";
+	// Do not keep very large buffers around
+	private static final int MAX_KEPT_BUFFER = 1024 * 1024;
+
+	/**
+	 * A template split into literal byte segments and the keys between them.
+	 */
+	public static final class CompiledTemplate {
+		private final long stamp;
+		private final byte[] content;
+		// There is always one literal more than the keys, literals may be empty
+		private final int[] literalStarts;
+		private final int[] literalEnds;
+		private final String[] keys;
+
+		private CompiledTemplate(long stamp, byte[] content, int[] literalStarts, int[] literalEnds, String[] keys) {
+			this.stamp = stamp;
+			this.content = content;
+			this.literalStarts = literalStarts;
+			this.literalEnds = literalEnds;
+			this.keys = keys;
+		}
+
+		/**
+		 * @return number of keys found on the template
+		 */
+		public int getPlaceholderCount(){
+			return keys.length;
+		}
+
+		/**
+		 * Writes the template to the output replacing the keys with values.
+		 * A null value removes the key.
+		 *
+		 * @param values
+		 * @param out
+		 * @throws IOException
+		 */
+		public void render(Map<String, String> values, OutputStream out) throws IOException{
+			Map<String, byte[]> encoded = new HashMap<String, byte[]>();
+			for (int i = 0; i < keys.length; i++) {
+				out.write(content, literalStarts[i], literalEnds[i] - literalStarts[i]);
+				byte[] value = encoded.get(keys[i]);
+				if(value == null ){
+					String s = values.get(keys[i]);
+					value = s == null ? new byte[0] : s.getBytes(UTF8);
+					encoded.put(keys[i], value);
+				}
+				out.write(value);
+			}
+			int last = keys.length;
+			out.write(content, literalStarts[last], literalEnds[last] - literalStarts[last]);
+		}
+
+		/**
+		 * Renders the template to a reusable buffer and writes it
+		 * to the file with a single write.
+		 *
+		 * @param values
+		 * @param file
+		 * @throws IOException
+		 */
+		public void render(Map<String, String> values, File file) throws IOException{
+			ByteArrayOutputStream buffer = BUFFER.get();
+			buffer.reset();
+			try{
+				render(values, buffer);
+				FileOutputStream out = new FileOutputStream(file);
+				try{
+					buffer.writeTo(out);
+				}finally{
+					out.close();
+				}
+			}finally{
+				if(buffer.size() > MAX_KEPT_BUFFER ){
+					BUFFER.remove();
+				}
+			}
+		}
+	}
+
+	private static final ThreadLocal<ByteArrayOutputStream> BUFFER = new ThreadLocal<ByteArrayOutputStream>(){
+		@Override
+		protected ByteArrayOutputStream initialValue() {
+			return new ByteArrayOutputStream(8192);
+		}
+	};
+
+	private static final TemplateEngine instance = new TemplateEngine();
+	private final Map<String, CompiledTemplate> templates = new ConcurrentHashMap<String, CompiledTemplate>();
+
+	private TemplateEngine(){
+		//singleton
+	}
+
+	public static TemplateEngine getInstance(){
+		return instance;
+	}
+
+	/**
+	 * Returns the cached template for the source and keys if it is
+	 * compiled from a source with the same stamp.
+	 *
+	 * @param source URL of the template
+	 * @param stamp modification stamp of the source
+	 * @param keys template keys
+	 * @return the cached template or null
+	 */
+	public CompiledTemplate getTemplate(URL source, long stamp, Collection<String> keys){
+		CompiledTemplate template = templates.get(cacheKey(source, keys));
+		if(template != null && template.stamp == stamp )
+			return template;
+		return null;
+	}
+
+	/**
+	 * Compiles the template contents for the given keys and
+	 * caches the result for the source.
+	 *
+	 * @param source URL of the template
+	 * @param stamp modification stamp of the source
+	 * @param content template contents
+	 * @param keys template keys
+	 * @return compiled template
+	 */
+	public CompiledTemplate compile(URL source, long stamp, byte[] content, Collection<String> keys){
+		CompiledTemplate template = compile(stamp, content, keys);
+		templates.put(cacheKey(source, keys), template);
+		return template;
+	}
+
+	/**
+	 * Removes all the cached templates.
+	 */
+	public void clear(){
+		templates.clear();
+	}
+
+	private CompiledTemplate compile(long stamp, byte[] content, Collection<String> keys){
+		List<String> nonEmptyKeys = new ArrayList<String>(keys.size());
+		for (String key : keys) {
+			if(key != null && key.length() > 0 ){
+				nonEmptyKeys.add(key);
+			}
+		}
+		if(nonEmptyKeys.isEmpty()){
+			return new CompiledTemplate(stamp, content, new int[]{0}, new int[]{content.length}, new String[0]);
+		}
+		String[] patterns = new String[nonEmptyKeys.size()];
+		for (int i = 0; i < patterns.length; i++) {
+			patterns[i] = toLatin1(nonEmptyKeys.get(i));
+		}
+		MultiPatternMatcher matcher = new MultiPatternMatcher(patterns);
+
+		List<Integer> starts = new ArrayList<Integer>();
+		List<Integer> ends = new ArrayList<Integer>();
+		List<String> found = new ArrayList<String>();
+		int literalStart = 0;
+		int state = matcher.getInitialState();
+		for (int i = 0; i < content.length; i++) {
+			state = matcher.next(state, (char) (content[i] & 0xff));
+			int match = matcher.getMatch(state);
+			if(match >= 0 ){
+				starts.add(Integer.valueOf(literalStart));
+				ends.add(Integer.valueOf(i + 1 - patterns[match].length()));
+				found.add(nonEmptyKeys.get(match));
+				literalStart = i + 1;
+				state = matcher.getInitialState();
+			}
+		}
+		starts.add(Integer.valueOf(literalStart));
+		ends.add(Integer.valueOf(content.length));
+		int[] literalStarts = new int[starts.size()];
+		int[] literalEnds = new int[ends.size()];
+		for (int i = 0; i < literalStarts.length; i++) {
+			literalStarts[i] = starts.get(i).intValue();
+			literalEnds[i] = ends.get(i).intValue();
+		}
+		return new CompiledTemplate(stamp, content, literalStarts, literalEnds, found.toArray(new String[found.size()]));
+	}
+
+	private static String cacheKey(URL source, Collection<String> keys){
+		return source.toExternalForm() + '\n' + new TreeSet<String>(keys).toString();
+	}
+
+	private static String toLatin1(String key){
+		try {
+			return new String(key.getBytes(UTF8), LATIN1);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -10,37 +10,70 @@
  ******************************************************************************/
 package org.jboss.tools.aerogear.hybrid.core.util;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 import org.eclipse.debug.core.IStreamListener;
 import org.eclipse.debug.core.model.IStreamMonitor;
 /**
- * A utility {@link IStreamListener} implementation that detects if 
- * given text is encountered on the stream.
- * 
- * @author Gorkem Ercan
+ * A utility {@link IStreamListener} implementation that detects if
+ * any of the given texts is encountered on the stream. Texts split
+ * across the appended chunks are also detected. Each stream the
+ * listener is added to is matched separately, and the first
+ * text detected on any of them wins.
  *
+ * @author Gorkem Ercan
+ * @see StreamingTextMatcher
  */
 public class TextDetectingStreamListener implements IStreamListener {
 
-	private boolean detected;
-	private String theText;
+	private final MultiPatternMatcher patterns;
+	private final StreamingTextMatcher.MatchListener matchListener;
+	private final Map<IStreamMonitor, StreamingTextMatcher> matchers = new IdentityHashMap<IStreamMonitor, StreamingTextMatcher>(4);
+	private volatile String detected;
+
 	/**
-	 * Constructor that sets the text to be detected
-	 * 
-	 * @param text
+	 * Constructor that sets the texts to be detected
+	 *
+	 * @param texts
 	 */
-	public TextDetectingStreamListener(String text ){
-		this.theText = text;
+	public TextDetectingStreamListener(String... texts ){
+		this.patterns = new MultiPatternMatcher(texts);
+		this.matchListener = new StreamingTextMatcher.MatchListener() {
+			@Override
+			public void matched(StreamingTextMatcher matcher, int patternIndex) {
+				synchronized (TextDetectingStreamListener.this) {
+					if(detected == null ){
+						detected = patterns.getPattern(patternIndex);
+					}
+				}
+			}
+		};
 	}
-	
+
 	@Override
 	public void streamAppended(String text, IStreamMonitor monitor) {
-		
-		if(text.contains(theText)){
-			detected = true;
+		if(detected != null )
+			return;
+		StreamingTextMatcher matcher;
+		synchronized (this) {
+			matcher = matchers.get(monitor);
+			if(matcher == null ){
+				matcher = new StreamingTextMatcher(patterns, matchListener);
+				matchers.put(monitor, matcher);
+			}
 		}
+		matcher.append(text);
 	}
-	
+
 	public boolean isTextDetected(){
+		return detected != null;
+	}
+
+	/**
+	 * @return the first text detected or null
+	 */
+	public String getDetectedText(){
 		return detected;
 	}
 
@@ -33,7 +33,7 @@ public class TracingStreamListener implements IStreamListener {
 
 	@Override
 	public void streamAppended(String text, IStreamMonitor monitor) {
-		HybridCore.trace(text);
+		HybridCore.trace(HybridCore.TRACE_PROCESS, HybridCore.TRACE_VERBOSE, text);
 		if(delegate != null){
 			delegate.streamAppended(text, monitor);
 		}
@@ -44,6 +44,12 @@ public interface IOSSimulatorLaunchConstants {
 	 */
 	public static final String ATTR_SIMULATOR_SDK_DESCRIPTION = IOSCore.PLUGIN_ID + ".ATTR_SIMULATOR_SDK_VERSION";
 	
+	/**
+	 * Attribute to build incrementally, the project is only cleaned 
+	 * when the generated Xcode project or the SDK changes. Defaults to true
+	 */
+	public static final String ATTR_INCREMENTAL_BUILD = IOSCore.PLUGIN_ID + ".ATTR_INCREMENTAL_BUILD";
+	
 	/**
 	 * Value for device family attribute
 	 */
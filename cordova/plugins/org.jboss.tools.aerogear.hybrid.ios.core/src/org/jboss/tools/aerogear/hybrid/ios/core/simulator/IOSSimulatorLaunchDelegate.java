@@ -11,6 +11,8 @@
 package org.jboss.tools.aerogear.hybrid.ios.core.simulator;
 
 import static org.jboss.tools.aerogear.hybrid.ios.core.simulator.IOSSimulatorLaunchConstants.ATTR_DEVICE_FAMILY;
+import static org.jboss.tools.aerogear.hybrid.ios.core.simulator.IOSSimulatorLaunchConstants.ATTR_INCREMENTAL_BUILD;
+import static org.jboss.tools.aerogear.hybrid.ios.core.simulator.IOSSimulatorLaunchConstants.ATTR_SIMULATOR_SDK_DESCRIPTION;
 import static org.jboss.tools.aerogear.hybrid.ios.core.simulator.IOSSimulatorLaunchConstants.ATTR_USE_RETINA;
 import static org.jboss.tools.aerogear.hybrid.ios.core.simulator.IOSSimulatorLaunchConstants.ATTR_USE_TALL;
 import static org.jboss.tools.aerogear.hybrid.ios.core.simulator.IOSSimulatorLaunchConstants.VAL_DEVICE_FAMILY_IPHONE;
@@ -90,7 +92,9 @@ public class IOSSimulatorLaunchDelegate implements
 		}
 		SubProgressMonitor xcodebuildMonitor = new SubProgressMonitor(monitor, 1);
 		XCodeBuild build = new XCodeBuild();
-		boolean buildSuccess = build.runBuild(getProject(configuration),xcodeProjectDir,  configuration, xcodebuildMonitor);
+		String sdk = XCodeBuild.getSimulatorSDK(configuration.getAttribute(ATTR_SIMULATOR_SDK_DESCRIPTION, (String)null));
+		boolean incremental = configuration.getAttribute(ATTR_INCREMENTAL_BUILD, true);
+		boolean buildSuccess = build.runBuild(getProject(configuration),xcodeProjectDir, sdk, incremental, configuration, xcodebuildMonitor);
 		buildDir = XCodeBuild.getBuildDir(xcodeProjectDir);
 		monitor.done();
 		if(!buildSuccess){
@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *       Red Hat, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.ios.core.xcode;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.dd.plist.NSArray;
+import com.dd.plist.NSDictionary;
+import com.dd.plist.NSObject;
+import com.dd.plist.NSString;
+
+/**
+ * Reads and writes the ASCII plist format used by project.pbxproj. Unlike
+ * the dd-plist ASCII parser, which converts unquoted values such as the
+ * object ids to numbers and booleans, all the values are kept as
+ * {@link NSString} so that a file can be read and written back without
+ * losing information. Comments are skipped, Xcode recreates them.
+ *
+ * @author Gorkem Ercan
+ *
+ */
+final class ASCIIPlistFormat {
+
+	private static final String HEADER = "// !$*UTF8*$!";
+
+	private final String text;
+	private int index;
+
+	private ASCIIPlistFormat(String text){
+		this.text = text;
+	}
+
+	/**
+	 * Parses an ASCII plist
+	 *
+	 * @param text
+	 * @return {@link NSDictionary}, {@link NSArray} or {@link NSString}
+	 * @throws ParseException
+	 */
+	static NSObject parse(String text) throws ParseException{
+		ASCIIPlistFormat parser = new ASCIIPlistFormat(text);
+		NSObject root = parser.readObject();
+		parser.skipWhitespace();
+		if(parser.index < text.length()){
+			throw parser.error("Unexpected content after the root object");
+		}
+		return root;
+	}
+
+	/**
+	 * Formats the object the way Xcode writes project.pbxproj, dictionary
+	 * keys are sorted with <i>isa</i> first.
+	 *
+	 * @param root
+	 * @return text of the plist
+	 */
+	static String format(NSObject root){
+		StringBuilder out = new StringBuilder(64 * 1024);
+		out.append(HEADER).append('\n');
+		write(root, out, 0);
+		out.append('\n');
+		return out.toString();
+	}
+
+	private NSObject readObject() throws ParseException{
+		skipWhitespace();
+		if(index >= text.length()){
+			throw error("Unexpected end of file");
+		}
+		char c = text.charAt(index);
+		switch (c) {
+		case '{':
+			return readDictionary();
+		case '(':
+			return readArray();
+		case '"':
+			return new NSString(readQuoted());
+		default:
+			return new NSString(readUnquoted());
+		}
+	}
+
+	private NSDictionary readDictionary() throws ParseException{
+		index++;// {
+		NSDictionary dictionary = new NSDictionary();
+		while(true){
+			skipWhitespace();
+			if(peek() == '}'){
+				index++;
+				return dictionary;
+			}
+			String key = peek() == '"' ? readQuoted() : readUnquoted();
+			expect('=');
+			NSObject value = readObject();
+			expect(';');
+			dictionary.put(key, value);
+		}
+	}
+
+	private NSArray readArray() throws ParseException{
+		index++;// (
+		List<NSObject> values = new ArrayList<NSObject>();
+		while(true){
+			skipWhitespace();
+			if(peek() == ')'){
+				index++;
+				return new NSArray(values.toArray(new NSObject[values.size()]));
+			}
+			values.add(readObject());
+			skipWhitespace();
+			if(peek() == ','){
+				index++;
+			}else if(peek() != ')'){
+				throw error("Expected , or )");
+			}
+		}
+	}
+
+	private String readQuoted() throws ParseException{
+		index++;// "
+		StringBuilder value = new StringBuilder();
+		while(index < text.length()){
+			char c = text.charAt(index++);
+			if(c == '"'){
+				return value.toString();
+			}
+			if(c != '\\'){
+				value.append(c);
+				continue;
+			}
+			if(index >= text.length()){
+				break;
+			}
+			char escaped = text.charAt(index++);
+			switch (escaped) {
+			case 'n':
+				value.append('\n');
+				break;
+			case 't':
+				value.append('\t');
+				break;
+			case 'r':
+				value.append('\r');
+				break;
+			case 'U':
+				if(index + 4 > text.length()){
+					throw error("Invalid unicode escape");
+				}
+				try{
+					value.append((char) Integer.parseInt(text.substring(index, index + 4), 16));
+				}catch(NumberFormatException e){
+					throw error("Invalid unicode escape");
+				}
+				index += 4;
+				break;
+			default:
+				value.append(escaped);
+				break;
+			}
+		}
+		throw error("Unterminated string");
+	}
+
+	private String readUnquoted() throws ParseException{
+		int start = index;
+		while(index < text.length()){
+			char c = text.charAt(index);
+			if(Character.isWhitespace(c) || c == ';' || c == ',' || c == '=' || c == ')' || c == '}'
+					|| c == '"' || c == '(' || c == '{' || isCommentStart()){
+				break;
+			}
+			index++;
+		}
+		if(start == index){
+			throw error("Expected a value");
+		}
+		return text.substring(start, index);
+	}
+
+	private void expect(char c) throws ParseException{
+		skipWhitespace();
+		if(peek() != c){
+			throw error("Expected " + c);
+		}
+		index++;
+	}
+
+	private char peek() throws ParseException{
+		if(index >= text.length()){
+			throw error("Unexpected end of file");
+		}
+		return text.charAt(index);
+	}
+
+	private boolean isCommentStart(){
+		if(text.charAt(index) != '/' || index + 1 >= text.length())
+			return false;
+		char next = text.charAt(index + 1);
+		return next == '/' || next == '*';
+	}
+
+	private void skipWhitespace() throws ParseException{
+		while(index < text.length()){
+			if(Character.isWhitespace(text.charAt(index))){
+				index++;
+			}else if(isCommentStart()){
+				if(text.charAt(index + 1) == '/'){
+					int end = text.indexOf('\n', index);
+					index = end < 0 ? text.length() : end + 1;
+				}else{
+					int end = text.indexOf("*/", index + 2);
+					if(end < 0){
+						throw error("Unterminated comment");
+					}
+					index = end + 2;
+				}
+			}else{
+				return;
+			}
+		}
+	}
+
+	private ParseException error(String message){
+		int line = 1;
+		for (int i = 0; i < index && i < text.length(); i++) {
+			if(text.charAt(i) == '\n')
+				line++;
+		}
+		return new ParseException(message + " at line " + line, index);
+	}
+
+	private static void write(NSObject object, StringBuilder out, int indent){
+		if(object instanceof NSDictionary){
+			NSDictionary dictionary = (NSDictionary) object;
+			out.append("{\n");
+			for (String key : sortedKeys(dictionary)) {
+				indent(out, indent + 1);
+				writeString(key, out);
+				out.append(" = ");
+				write(dictionary.objectForKey(key), out, indent + 1);
+				out.append(";\n");
+			}
+			indent(out, indent);
+			out.append('}');
+		}else if(object instanceof NSArray){
+			out.append("(\n");
+			for (NSObject value : ((NSArray) object).getArray()) {
+				indent(out, indent + 1);
+				write(value, out, indent + 1);
+				out.append(",\n");
+			}
+			indent(out, indent);
+			out.append(')');
+		}else if(object instanceof NSString){
+			writeString(((NSString) object).getContent(), out);
+		}else{
+			writeString(String.valueOf(object), out);
+		}
+	}
+
+	private static String[] sortedKeys(NSDictionary dictionary){
+		String[] keys = dictionary.allKeys();
+		Arrays.sort(keys);
+		for (int i = 0; i < keys.length; i++) {
+			if("isa".equals(keys[i])){
+				System.arraycopy(keys, 0, keys, 1, i);
+				keys[0] = "isa";
+				break;
+			}
+		}
+		return keys;
+	}
+
+	private static void writeString(String value, StringBuilder out){
+		if(!needsQuotes(value)){
+			out.append(value);
+			return;
+		}
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+			case '\\':
+				out.append('\\').append(c);
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			default:
+				out.append(c);
+				break;
+			}
+		}
+		out.append('"');
+	}
+
+	private static boolean needsQuotes(String value){
+		if(value.isEmpty() || value.contains("//") || value.contains("/*"))
+			return true;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if(!(c < 128 && (Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '/' || c == ':' || c == '.' || c == '-'))){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void indent(StringBuilder out, int indent){
+		for (int i = 0; i < indent; i++) {
+			out.append('\t');
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *       Red Hat, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.ios.core.xcode;
+
+import static org.jboss.tools.aerogear.hybrid.core.util.FileUtils.directoryCopy;
+import static org.jboss.tools.aerogear.hybrid.core.util.FileUtils.toURL;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URL;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.debug.core.ILaunchConfiguration;
+import org.jboss.tools.aerogear.hybrid.core.HybridCore;
+import org.jboss.tools.aerogear.hybrid.core.util.ExternalProcessUtility;
+import org.jboss.tools.aerogear.hybrid.core.util.TextDetectingStreamListener;
+import org.jboss.tools.aerogear.hybrid.ios.core.IOSCore;
+import org.osgi.framework.Bundle;
+
+/**
+ * The CordovaLib shared by all the generated Xcode projects. The library
+ * is extracted from the bundle once per Cordova version to a folder under
+ * the bundle data area and compiled once per SDK, next to the sources, 
+ * to <i>&lt;version&gt;/&lt;sdk&gt;/libCordova.a</i> with its public 
+ * headers under <i>include/Cordova</i>. The generated projects link 
+ * this archive instead of building CordovaLib themselves.
+ *
+ * @author Gorkem Ercan
+ *
+ */
+public final class CordovaLibrary {
+
+	private static final String TEMPLATE_ROOT = "/templates/CordovaLib";
+	private static final String LIBRARY_ROOT = "/cordovalib/";
+	private static final String LIBRARY_DIR = "CordovaLib";
+	// written last, a library folder without it is an interrupted extraction
+	private static final String EXTRACTED_MARKER = ".extracted";
+	// written in the SDK folder with the stamp of the extracted sources it was built from
+	private static final String BUILT_MARKER = ".built";
+	public static final String ARCHIVE_NAME = "libCordova.a";
+
+	private static final Object lock = new Object();
+
+	private CordovaLibrary(){
+		//No instances
+	}
+
+	/**
+	 * Returns the version of the CordovaLib that comes with the bundle.
+	 *
+	 * @return version such as <i>2.4.0</i>
+	 * @throws IOException
+	 */
+	public static String getVersion() throws IOException{
+		URL versionFile = getBundle().getEntry(TEMPLATE_ROOT + "/VERSION");
+		if(versionFile == null ){
+			throw new IOException("CordovaLib VERSION file is missing");
+		}
+		String version = readLine(versionFile.openStream());
+		if(version == null || version.trim().isEmpty()){
+			throw new IOException("CordovaLib VERSION file is empty");
+		}
+		return version.trim();
+	}
+
+	/**
+	 * Returns the shared CordovaLib folder for the bundled Cordova version,
+	 * extracting it first if it is not there or was extracted from a
+	 * different build of the bundle.
+	 *
+	 * @return CordovaLib folder that contains CordovaLib.xcodeproj
+	 * @throws IOException
+	 */
+	public static File getLibraryDirectory() throws IOException{
+		Bundle bundle = getBundle();
+		File versionDir = new File(bundle.getDataFile(LIBRARY_ROOT), toFileName(getVersion()));
+		File library = new File(versionDir, LIBRARY_DIR);
+		File marker = new File(versionDir, EXTRACTED_MARKER);
+		String stamp = bundle.getVersion() + "@" + bundle.getLastModified();
+		synchronized (lock) {
+			if(library.isDirectory() && stamp.equals(readMarker(marker))){
+				return library;
+			}
+			long start = System.currentTimeMillis();
+			if(!versionDir.isDirectory() && !versionDir.mkdirs()){
+				throw new IOException("Can not create " + versionDir);
+			}
+			marker.delete();
+			File tmp = new File(versionDir, LIBRARY_DIR + ".tmp");
+			delete(tmp);
+			if(!tmp.mkdir()){
+				throw new IOException("Can not create " + tmp);
+			}
+			directoryCopy(bundle.getEntry(TEMPLATE_ROOT), toURL(tmp));
+			delete(library);
+			if(!tmp.renameTo(library)){
+				throw new IOException("Can not move the extracted CordovaLib to " + library);
+			}
+			writeMarker(marker, stamp);
+			if(HybridCore.isTracing(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO)){
+				HybridCore.trace(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO, "CordovaLib " + versionDir.getName()
+						+ " extracted in " + (System.currentTimeMillis() - start) + " ms.");
+			}
+			return library;
+		}
+	}
+
+	/**
+	 * Returns the root folder of the shared CordovaLib for the bundled 
+	 * Cordova version. It contains the CordovaLib sources and a folder 
+	 * for each SDK it was built for.
+	 * 
+	 * @return root folder
+	 * @throws IOException
+	 */
+	public static File getRootDirectory() throws IOException{
+		return getLibraryDirectory().getParentFile();
+	}
+
+	/**
+	 * Returns the folder with the CordovaLib archive built for the SDK, 
+	 * building it first if it is not there or was built from a different 
+	 * extraction. Builds are serialized, a project that needs an archive 
+	 * that is being built waits for it instead of building it again.
+	 * 
+	 * @param sdk name of the SDK such as <i>iphonesimulator6.1</i>
+	 * @param launchConfiguration shows the build output, may be null
+	 * @param monitor
+	 * @return folder with {@link #ARCHIVE_NAME} and <i>include/Cordova</i> 
+	 * @throws CoreException if the build fails or is cancelled
+	 */
+	public static File getArchiveDirectory(String sdk, ILaunchConfiguration launchConfiguration, IProgressMonitor monitor) throws CoreException{
+		synchronized (lock) {
+			try{
+				File library = getLibraryDirectory();
+				File versionDir = library.getParentFile();
+				String stamp = readMarker(new File(versionDir, EXTRACTED_MARKER));
+				File archiveDir = new File(versionDir, toFileName(sdk));
+				if(stamp != null && new File(archiveDir, ARCHIVE_NAME).isFile() 
+						&& stamp.equals(readMarker(new File(archiveDir, BUILT_MARKER)))){
+					return archiveDir;
+				}
+				long start = System.currentTimeMillis();
+				File tmp = new File(versionDir, archiveDir.getName() + ".tmp");
+				File objDir = new File(versionDir, archiveDir.getName() + ".obj");
+				delete(tmp);
+				StringBuilder cmdString = new StringBuilder("xcodebuild -project CordovaLib.xcodeproj");
+				cmdString.append(" -arch i386 -target CordovaLib");
+				cmdString.append(" -configuration Release -sdk ").append(sdk);
+				cmdString.append(" clean build");
+				cmdString.append(" VALID_ARCHS=\"i386\" CONFIGURATION_BUILD_DIR=");
+				cmdString.append("\"").append(tmp.getPath()).append("\"");
+				cmdString.append(" OBJROOT=");
+				cmdString.append("\"").append(objDir.getPath()).append("\"");
+				TextDetectingStreamListener listener = new TextDetectingStreamListener(XCodeBuild.BUILD_SUCCEEDED, XCodeBuild.BUILD_FAILED);
+				new ExternalProcessUtility().execSync(cmdString.toString(), library, 
+						listener, listener, monitor, null, launchConfiguration);
+				if(monitor != null && monitor.isCanceled()){
+					throw new CoreException(new Status(IStatus.CANCEL, IOSCore.PLUGIN_ID, "CordovaLib build is cancelled"));
+				}
+				if(!XCodeBuild.BUILD_SUCCEEDED.equals(listener.getDetectedText()) || !new File(tmp, ARCHIVE_NAME).isFile()){
+					throw new CoreException(new Status(IStatus.ERROR, IOSCore.PLUGIN_ID, "CordovaLib build failed for " + sdk));
+				}
+				writeMarker(new File(tmp, BUILT_MARKER), stamp);
+				delete(archiveDir);
+				if(!tmp.renameTo(archiveDir)){
+					throw new IOException("Can not move the CordovaLib build to " + archiveDir);
+				}
+				delete(objDir);
+				if(HybridCore.isTracing(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO)){
+					HybridCore.trace(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO, "CordovaLib " + versionDir.getName()
+							+ " built for " + sdk + " in " + (System.currentTimeMillis() - start) + " ms.");
+				}
+				return archiveDir;
+			}catch(IOException e){
+				throw new CoreException(new Status(IStatus.ERROR, IOSCore.PLUGIN_ID, "Error preparing CordovaLib for " + sdk, e));
+			}
+		}
+	}
+
+	/**
+	 * Returns the stamp of the archive built for the SDK, it changes 
+	 * every time the archive is rebuilt.
+	 * 
+	 * @param archiveDir folder returned by {@link #getArchiveDirectory(String, ILaunchConfiguration, IProgressMonitor)}
+	 * @return stamp or null if the archive is not built
+	 */
+	public static String getArchiveStamp(File archiveDir){
+		File archive = new File(archiveDir, ARCHIVE_NAME);
+		return archive.isFile() ? archive.length() + "@" + archive.lastModified() : null;
+	}
+
+	private static Bundle getBundle(){
+		return IOSCore.getContext().getBundle();
+	}
+
+	private static String toFileName(String version){
+		return version.replaceAll("[^a-zA-Z0-9._-]", "_");
+	}
+
+	private static String readMarker(File marker){
+		if(!marker.isFile())
+			return null;
+		try{
+			return readLine(new FileInputStream(marker));
+		}catch(IOException e){
+			return null;
+		}
+	}
+
+	private static String readLine(InputStream in) throws IOException{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		try{
+			return reader.readLine();
+		}finally{
+			reader.close();
+		}
+	}
+
+	private static void writeMarker(File marker, String stamp) throws IOException{
+		OutputStream out = new FileOutputStream(marker);
+		try{
+			out.write(stamp.getBytes("UTF-8"));
+		}finally{
+			out.close();
+		}
+	}
+
+	private static void delete(File file) throws IOException{
+		if(!file.exists())
+			return;
+		if(file.isDirectory()){
+			File[] children = file.listFiles();
+			if(children != null ){
+				for (File child : children) {
+					delete(child);
+				}
+			}
+		}
+		if(!file.delete()){
+			throw new IOException("Can not delete " + file);
+		}
+	}
+
+}
@@ -10,19 +10,26 @@
  *******************************************************************************/
 package org.jboss.tools.aerogear.hybrid.ios.core.xcode;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.util.ArrayList;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.debug.core.ILaunchConfiguration;
-import org.eclipse.debug.core.IStreamListener;
-import org.eclipse.debug.core.model.IStreamMonitor;
+import org.jboss.tools.aerogear.hybrid.core.HybridCore;
 import org.jboss.tools.aerogear.hybrid.core.HybridProject;
 import org.jboss.tools.aerogear.hybrid.core.util.ExternalProcessUtility;
 import org.jboss.tools.aerogear.hybrid.core.util.TextDetectingStreamListener;
@@ -35,39 +42,16 @@ import org.jboss.tools.aerogear.hybrid.ios.core.IOSCore;
  */
 public class XCodeBuild {
 	
-	private class SDKListParser implements IStreamListener{
-		ArrayList<XCodeSDK> sdkList=new ArrayList<XCodeSDK>(5);
-		@Override
-		public void streamAppended(String text, IStreamMonitor monitor) {
-			
-			if(text.indexOf("-sdk")>0){
-				text = text.replaceAll("[ a-zA-Z1-9.1-9]*:", "");
-				text = text.replaceAll("-sdk [a-z]*[0-9]*.[0-9]*", "");
-				String[] sdks = text.split("\n");
-				for (String string : sdks) {
-					String clean = string.trim();
-					if(!clean.isEmpty()){
-					sdkList.add(new XCodeSDK(clean));
-					}
-					
-				}
-				
-			}
-			
-		}
-	}
-	
-	private class XCodeVersionParser implements IStreamListener{
-		String version;
-		@Override
-		public void streamAppended(String text, IStreamMonitor monitor) {
-			if(text.toLowerCase().startsWith("xcode")){
-				version = text.substring("XCode".length()+1, text.indexOf('\n'));
-			}
-		}
-		
-	}
+	/**
+	 * SDK name that selects the latest iOS simulator SDK
+	 */
+	public static final String SDK_IPHONE_SIMULATOR = "iphonesimulator";
+	private static final String FINGERPRINT_FILE = ".xcodebuild.fingerprint";
+	static final String BUILD_SUCCEEDED = "** BUILD SUCCEEDED **";
+	static final String BUILD_FAILED = "** BUILD FAILED **";
 	
+	private long lastBuildDuration = -1;
+	private boolean lastBuildClean;
 	
 	/**
 	 * Returns the actual folder where the build artifacts can be found.
@@ -79,11 +63,79 @@ public class XCodeBuild {
 		return new File(xcodeProjectFolder,"build");
 	}
 	
+	/**
+	 * Returns the folder where the intermediate build files are kept 
+	 * between builds.
+	 * 
+	 * @param xcodeProjectFolder
+	 * @return folder for intermediate build files
+	 */
+	public static File getDerivedDataDir(File xcodeProjectFolder){
+		return new File(xcodeProjectFolder,"DerivedData");
+	}
+	
+	/**
+	 * Returns the name of the simulator SDK to build for. The SDK with the 
+	 * given description is looked up on the installed SDKs, if description is 
+	 * null or the SDK is no longer installed the latest installed simulator SDK 
+	 * is used. Falls back to {@link #SDK_IPHONE_SIMULATOR} if the SDKs can 
+	 * not be determined.
+	 * 
+	 * @param sdkDescription description of the SDK as listed by 
+	 * {@link XCodeSDK#getDescription()} or null 
+	 * @return sdk name
+	 */
+	public static String getSimulatorSDK(String sdkDescription){
+		XCodeSDK sdk = null;
+		try{
+			XCodeToolchain toolchain = XCodeToolchain.getToolchain();
+			if(sdkDescription != null ){
+				sdk = toolchain.findSDK(sdkDescription);
+			}
+			if(sdk == null ){
+				sdk = toolchain.getLatestSimulatorSDK();
+			}
+		}catch(CoreException e){
+			HybridCore.trace("Can not determine the installed SDKs: " + e.getMessage());
+			if(sdkDescription != null ){
+				sdk = new XCodeSDK(sdkDescription);
+			}
+		}
+		return sdk == null || !sdk.isSimulator() ? SDK_IPHONE_SIMULATOR : sdk.getName();
+	}
+	
+	/**
+	 * Runs an incremental build for the latest simulator SDK.
+	 * 
+	 * @see #runBuild(IProject, File, String, boolean, ILaunchConfiguration, IProgressMonitor)
+	 */
 	public boolean runBuild(IProject project, File xcodeProject, 
 			ILaunchConfiguration launchConfiguration,IProgressMonitor monitor)throws CoreException
+	{
+		return runBuild(project, xcodeProject, getSimulatorSDK(null), true, launchConfiguration, monitor);
+	}
+	
+	/**
+	 * Builds the generated Xcode project. An incremental build keeps the 
+	 * intermediate files from the previous build and only cleans when the 
+	 * generated project.pbxproj, the SDK or the CordovaLib archive has 
+	 * changed since the last successful build. The shared CordovaLib 
+	 * archive is built for the SDK first if it is not there yet.
+	 * 
+	 * @param project
+	 * @param xcodeProject folder of the generated Xcode project
+	 * @param sdk name of the SDK such as <i>iphonesimulator6.1</i>
+	 * @param incremental false to always clean
+	 * @param launchConfiguration
+	 * @param monitor
+	 * @return true if the build succeeded
+	 * @throws CoreException
+	 */
+	public boolean runBuild(IProject project, File xcodeProject, String sdk, boolean incremental,
+			ILaunchConfiguration launchConfiguration,IProgressMonitor monitor)throws CoreException
 	{
 		try {
-			monitor.beginTask("Running XCcode build", 10);
+			monitor.beginTask("Running XCcode build", 20);
 			// xcodebuild -project $PROJECT_NAME.xcodeproj -arch i386 -target
 			// $PROJECT_NAME -configuration Release -sdk $SDK clean build
 			// VALID_ARCHS="i386" CONFIGURATION_BUILD_DIR="$PROJECT_PATH/build"
@@ -93,45 +145,166 @@ public class XCodeBuild {
 			}
 
 			String name = hybridProject.getBuildArtifactAppName();
+			File cordovaLib;
+			try{
+				cordovaLib = CordovaLibrary.getArchiveDirectory(sdk, launchConfiguration, new SubProgressMonitor(monitor, 10));
+			}catch(CoreException e){
+				if(e.getStatus().getSeverity() == IStatus.CANCEL)
+					return false;
+				throw e;
+			}
+			File fingerprintFile = new File(xcodeProject, FINGERPRINT_FILE);
+			// the app links the archive with -l, Xcode does not relink when only the archive changes
+			String fingerprint = fingerprint(new File(xcodeProject, name + ".xcodeproj/project.pbxproj"), 
+					sdk + ";" + CordovaLibrary.getArchiveStamp(cordovaLib));
+			boolean clean = !incremental || fingerprint == null || !fingerprint.equals(readFingerprint(fingerprintFile));
+			if(clean){
+				// a failed clean build must not be followed by an incremental one
+				fingerprintFile.delete();
+			}
 
 			StringBuilder cmdString = new StringBuilder("xcodebuild -project ");
 			cmdString.append("\"").append(name).append(".xcodeproj").append("\"");
 
 			cmdString.append(" -arch i386 -target ").append(name);
-			//TODO: do we need to clean every time?
-			cmdString.append(" -configuration Release -sdk iphonesimulator6.1 clean build VALID_ARCHS=\"i386\" CONFIGURATION_BUILD_DIR=");
+			cmdString.append(" -configuration Release -sdk ").append(sdk);
+			cmdString.append(clean ? " clean build" : " build");
+			cmdString.append(" VALID_ARCHS=\"i386\" CONFIGURATION_BUILD_DIR=");
 			cmdString.append("\"").append(getBuildDir(xcodeProject).getPath()).append("\"");
+			cmdString.append(" OBJROOT=");
+			cmdString.append("\"").append(getDerivedDataDir(xcodeProject).getPath()).append("\"");
+			// the project defaults to the SDK_NAME folder, the SDK given may be an alias
+			cmdString.append(" CORDOVALIB_PRODUCTS=");
+			cmdString.append("\"").append(cordovaLib.getPath()).append("\"");
 
 			ExternalProcessUtility processUtility = new ExternalProcessUtility();
 			if (monitor.isCanceled()) {
 				return false;
 			}
 			monitor.worked(1);
-			TextDetectingStreamListener listener = new TextDetectingStreamListener("** BUILD SUCCEEDED **");
+			long start = System.currentTimeMillis();
+			TextDetectingStreamListener listener = new TextDetectingStreamListener(BUILD_SUCCEEDED, BUILD_FAILED);
 			processUtility.execSync(cmdString.toString(), xcodeProject,
 					listener, listener, monitor, null, launchConfiguration);
-			return listener.isTextDetected();
+			lastBuildDuration = System.currentTimeMillis() - start;
+			lastBuildClean = clean;
+			boolean success = BUILD_SUCCEEDED.equals(listener.getDetectedText());
+			if(HybridCore.isTracing(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO)){
+				HybridCore.trace(HybridCore.TRACE_PERF, HybridCore.TRACE_INFO, "xcodebuild " + (clean ? "clean" : "incremental") 
+						+ " build of " + name + (success ? " succeeded" : " failed") + " in " + lastBuildDuration + " ms.");
+			}
+			if(success && fingerprint != null ){
+				writeFingerprint(fingerprintFile, fingerprint);
+			}
+			return success;
 		} finally {
 
 			monitor.done();
 		}
 
 	}
+	
+	/**
+	 * @return duration of the last build run by this instance in ms, -1 if none
+	 */
+	public long getLastBuildDuration() {
+		return lastBuildDuration;
+	}
+	
+	/**
+	 * @return true if the last build run by this instance was a clean build
+	 */
+	public boolean isLastBuildClean() {
+		return lastBuildClean;
+	}
+	
+	/**
+	 * Digest of the project.pbxproj contents and the SDK name with the 
+	 * CordovaLib stamp, null if the project file can not be read.
+	 */
+	private static String fingerprint(File pbxproj, String sdk){
+		InputStream in = null;
+		try{
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			in = new FileInputStream(pbxproj);
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1){
+				digest.update(buffer, 0, read);
+			}
+			digest.update(sdk.getBytes("UTF-8"));
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) {
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return hex.toString();
+		}catch(IOException e){
+			return null;
+		}catch(NoSuchAlgorithmException e){
+			return null;
+		}finally{
+			if(in != null ){
+				try {
+					in.close();
+				} catch (IOException e) {
+					//ignored
+				}
+			}
+		}
+	}
+	
+	private static String readFingerprint(File file){
+		if(!file.isFile())
+			return null;
+		BufferedReader reader = null;
+		try{
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			return reader.readLine();
+		}catch(IOException e){
+			return null;
+		}finally{
+			if(reader != null ){
+				try {
+					reader.close();
+				} catch (IOException e) {
+					//ignored
+				}
+			}
+		}
+	}
+	
+	private static void writeFingerprint(File file, String fingerprint){
+		OutputStream out = null;
+		try{
+			out = new FileOutputStream(file);
+			out.write(fingerprint.getBytes("UTF-8"));
+		}catch(IOException e){
+			file.delete();
+		}finally{
+			if(out != null ){
+				try {
+					out.close();
+				} catch (IOException e) {
+					//ignored
+				}
+			}
+		}
+	}
 
+	/**
+	 * @return installed SDKs
+	 * @see XCodeToolchain#getSDKs()
+	 */
 	public List<XCodeSDK> showSdks() throws CoreException {
-		ExternalProcessUtility processUtility = new ExternalProcessUtility();
-		SDKListParser parser = new SDKListParser();
-		processUtility.execSync("xcodebuild -showsdks ", 
-				null, parser, parser, new NullProgressMonitor(), null, null);
-		return parser.sdkList;
+		return XCodeToolchain.getToolchain().getSDKs();
 	}
 	
+	/**
+	 * @return Xcode version
+	 * @see XCodeToolchain#getVersion()
+	 */
 	public String version() throws CoreException{
-		ExternalProcessUtility processUtility = new ExternalProcessUtility();
-		XCodeVersionParser parser = new XCodeVersionParser();
-		processUtility.execSync("xcodebuild -version", 
-				null, parser, parser, new NullProgressMonitor(), null, null);
-		return parser.version;
+		return XCodeToolchain.getToolchain().getVersion();
 	}
 	
 }
@@ -10,10 +10,23 @@
  *******************************************************************************/
 package org.jboss.tools.aerogear.hybrid.ios.core.xcode;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.jboss.tools.aerogear.hybrid.ios.core.IOSCore;
 
-import com.dd.plist.ASCIIPropertyListParser;
 import com.dd.plist.NSDictionary;
+import com.dd.plist.NSObject;
+import com.dd.plist.NSString;
 /**
  * The root object on the XCode build file. XCode build file is a ASCII style plist file. 
  * At the root of the build file is a dictionary(NSDictionary) which holds the following values.
@@ -50,29 +63,102 @@ import com.dd.plist.NSDictionary;
  *    <td>The object is a reference to a PBXProject element</td>
  * </tr>
  * </table>
+ * Values are kept as they appear on the file, see {@link ASCIIPlistFormat}.
+ *
  * @author Gorkem Ercan
  *
  */
 public class XCodeBuildFileRoot {
+	private static final String KEY_OBJECTS = "objects";
+	private static final String KEY_ROOT_OBJECT = "rootObject";
+	
 	private NSDictionary dictionary;
 
 	
-	public XCodeBuildFileRoot(File file){
+	public XCodeBuildFileRoot(File file) throws CoreException{
 		try {
-			NSDictionary root = (NSDictionary)ASCIIPropertyListParser.parse(file);
-			this.dictionary = root;
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			NSObject root = ASCIIPlistFormat.parse(read(file));
+			if(!(root instanceof NSDictionary) || !(((NSDictionary)root).objectForKey(KEY_OBJECTS) instanceof NSDictionary)){
+				throw new CoreException(new Status(IStatus.ERROR, IOSCore.PLUGIN_ID, file + " is not an Xcode project file"));
+			}
+			this.dictionary = (NSDictionary) root;
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, IOSCore.PLUGIN_ID, "Error reading " + file, e));
+		} catch (ParseException e) {
+			throw new CoreException(new Status(IStatus.ERROR, IOSCore.PLUGIN_ID, "Error parsing " + file, e));
 		}
 	}
 	
-
+	/**
+	 * @return the dictionary of all the objects keyed by their ids
+	 */
+	public NSDictionary getObjects(){
+		return (NSDictionary) dictionary.objectForKey(KEY_OBJECTS);
+	}
+	
+	/**
+	 * Returns the object with the given id or null if there is no 
+	 * such object or it is not a dictionary.
+	 * 
+	 * @param id
+	 * @return object
+	 */
+	public NSDictionary getObject(String id){
+		if(id == null )
+			return null;
+		NSObject object = getObjects().objectForKey(id);
+		return object instanceof NSDictionary ? (NSDictionary) object : null;
+	}
+	
+	/**
+	 * @return id of the PBXProject object
+	 */
+	public String getRootObjectId(){
+		NSObject root = dictionary.objectForKey(KEY_ROOT_OBJECT);
+		return root instanceof NSString ? ((NSString) root).getContent() : null;
+	}
 	
 	public String toASCII(){
-		return dictionary.toASCIIPropertyList();
+		return ASCIIPlistFormat.format(dictionary);
 	}
 	
-
+	/**
+	 * Writes the project file.
+	 * 
+	 * @param file
+	 * @throws CoreException
+	 */
+	public void write(File file) throws CoreException{
+		OutputStream out = null;
+		try{
+			out = new FileOutputStream(file);
+			out.write(toASCII().getBytes("UTF-8"));
+		}catch(IOException e){
+			throw new CoreException(new Status(IStatus.ERROR, IOSCore.PLUGIN_ID, "Error writing " + file, e));
+		}finally{
+			if(out != null ){
+				try {
+					out.close();
+				} catch (IOException e) {
+					//ignored
+				}
+			}
+		}
+	}
+	
+	private static String read(File file) throws IOException{
+		InputStream in = new FileInputStream(file);
+		try{
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1){
+				out.write(buffer, 0, read);
+			}
+			return out.toString("UTF-8");
+		}finally{
+			in.close();
+		}
+	}
 	
 }
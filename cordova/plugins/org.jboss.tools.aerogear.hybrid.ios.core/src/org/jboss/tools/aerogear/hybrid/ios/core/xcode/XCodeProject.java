@@ -0,0 +1,525 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *       Red Hat, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.ios.core.xcode;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import org.eclipse.core.runtime.CoreException;
+
+import com.dd.plist.NSArray;
+import com.dd.plist.NSDictionary;
+import com.dd.plist.NSObject;
+import com.dd.plist.NSString;
+
+/**
+ * Model of a project.pbxproj file for patching a generated Xcode project.
+ * File references, build phases and their files are added and removed in
+ * memory and the file is written once with {@link #save()}. Additions are
+ * idempotent, adding a file reference or a build phase that already exists
+ * returns the existing one, so the same changes can be applied on every
+ * regeneration.
+ *
+ * @author Gorkem Ercan
+ *
+ */
+public class XCodeProject {
+
+	public static final String PHASE_SOURCES = "PBXSourcesBuildPhase";
+	public static final String PHASE_RESOURCES = "PBXResourcesBuildPhase";
+	public static final String PHASE_FRAMEWORKS = "PBXFrameworksBuildPhase";
+	public static final String PHASE_HEADERS = "PBXHeadersBuildPhase";
+
+	public static final String SOURCE_TREE_GROUP = "<group>";
+	public static final String SOURCE_TREE_ABSOLUTE = "<absolute>";
+	public static final String SOURCE_TREE_PROJECT = "SOURCE_ROOT";
+	public static final String SOURCE_TREE_SDK = "SDKROOT";
+
+	private static final String ISA = "isa";
+	private static final String ISA_FILE_REFERENCE = "PBXFileReference";
+	private static final String ISA_BUILD_FILE = "PBXBuildFile";
+	private static final String ISA_GROUP = "PBXGroup";
+	private static final String ISA_VARIANT_GROUP = "PBXVariantGroup";
+	private static final String ISA_NATIVE_TARGET = "PBXNativeTarget";
+	private static final String KEY_FILES = "files";
+	private static final String KEY_FILE_REF = "fileRef";
+	private static final String KEY_CHILDREN = "children";
+	private static final String KEY_BUILD_PHASES = "buildPhases";
+	private static final String KEY_PATH = "path";
+	private static final String KEY_NAME = "name";
+	private static final String KEY_SOURCE_TREE = "sourceTree";
+	private static final String KEY_MAIN_GROUP = "mainGroup";
+	private static final String KEY_CONFIGURATION_LIST = "buildConfigurationList";
+	private static final String KEY_CONFIGURATIONS = "buildConfigurations";
+	private static final String KEY_BUILD_SETTINGS = "buildSettings";
+
+	private static final Map<String, String> FILE_TYPES = new HashMap<String, String>();
+	static{
+		FILE_TYPES.put("m", "sourcecode.c.objc");
+		FILE_TYPES.put("mm", "sourcecode.cpp.objcpp");
+		FILE_TYPES.put("c", "sourcecode.c.c");
+		FILE_TYPES.put("h", "sourcecode.c.h");
+		FILE_TYPES.put("a", "archive.ar");
+		FILE_TYPES.put("dylib", "compiled.mach-o.dylib");
+		FILE_TYPES.put("framework", "wrapper.framework");
+		FILE_TYPES.put("bundle", "wrapper.plug-in");
+		FILE_TYPES.put("xcodeproj", "wrapper.pb-project");
+		FILE_TYPES.put("plist", "text.plist.xml");
+		FILE_TYPES.put("strings", "text.plist.strings");
+		FILE_TYPES.put("xib", "file.xib");
+		FILE_TYPES.put("png", "image.png");
+		FILE_TYPES.put("js", "sourcecode.javascript");
+		FILE_TYPES.put("html", "text.html");
+	}
+
+	private final File file;
+	private final XCodeBuildFileRoot root;
+	private boolean dirty;
+
+	/**
+	 * Reads the project file.
+	 *
+	 * @param pbxproj the project.pbxproj file
+	 * @throws CoreException if the file can not be read or parsed
+	 */
+	public XCodeProject(File pbxproj) throws CoreException{
+		this.file = pbxproj;
+		this.root = new XCodeBuildFileRoot(pbxproj);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return true if the model has changes that are not saved
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Writes the project file if there are unsaved changes.
+	 *
+	 * @return true if the file was written
+	 * @throws CoreException
+	 */
+	public boolean save() throws CoreException{
+		if(!dirty)
+			return false;
+		root.write(file);
+		dirty = false;
+		return true;
+	}
+
+	/**
+	 * @param name
+	 * @return id of the native target with the given name or null
+	 */
+	public String findTarget(String name){
+		for (String id : getIds(getRootProject(), "targets")) {
+			NSDictionary target = root.getObject(id);
+			if(isa(target, ISA_NATIVE_TARGET) && name.equals(getString(target, KEY_NAME))){
+				return id;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return id of the main group of the project or null
+	 */
+	public String getMainGroup(){
+		return getString(getRootProject(), KEY_MAIN_GROUP);
+	}
+
+	/**
+	 * Finds a file reference in the main group of the project.
+	 *
+	 * @see #findFileReference(String, String, String)
+	 */
+	public String findFileReference(String path, String sourceTree){
+		return findFileReference(getMainGroup(), path, sourceTree);
+	}
+
+	/**
+	 * Finds a file reference that is a direct child of the group. Paths
+	 * are only unique within a group and source tree, localized files for 
+	 * instance all have the same path in their own <i>PBXVariantGroup</i>.
+	 *
+	 * @param groupId id of a group or a variant group
+	 * @param path
+	 * @param sourceTree one of the SOURCE_TREE_ constants
+	 * @return id of the file reference or null
+	 */
+	public String findFileReference(String groupId, String path, String sourceTree){
+		for (String id : getIds(root.getObject(groupId), KEY_CHILDREN)) {
+			NSDictionary object = root.getObject(id);
+			if(isa(object, ISA_FILE_REFERENCE) && path.equals(getString(object, KEY_PATH))
+					&& sourceTree.equals(getString(object, KEY_SOURCE_TREE))){
+				return id;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a file reference to the main group of the project. The file type
+	 * is guessed from the extension.
+	 *
+	 * @see #addFileReference(String, String, String, String)
+	 */
+	public String addFileReference(String path, String sourceTree){
+		return addFileReference(path, sourceTree, guessFileType(path));
+	}
+
+	/**
+	 * Adds a file reference to the main group of the project.
+	 *
+	 * @see #addFileReference(String, String, String, String)
+	 */
+	public String addFileReference(String path, String sourceTree, String fileType){
+		return addFileReference(getMainGroup(), path, sourceTree, fileType);
+	}
+
+	/**
+	 * Adds a file reference to the group. If the group already has a file
+	 * reference with the same path and source tree its id is returned instead.
+	 *
+	 * @param groupId id of a group or a variant group
+	 * @param path path of the file
+	 * @param sourceTree one of the SOURCE_TREE_ constants
+	 * @param fileType Xcode file type such as <i>sourcecode.c.objc</i>
+	 * @return id of the file reference
+	 * @throws IllegalArgumentException if there is no such group
+	 */
+	public String addFileReference(String groupId, String path, String sourceTree, String fileType){
+		NSDictionary group = root.getObject(groupId);
+		if(!isGroup(group))
+			throw new IllegalArgumentException(groupId + " is not a group");
+		String existing = findFileReference(groupId, path, sourceTree);
+		if(existing != null )
+			return existing;
+		NSDictionary reference = newObject(ISA_FILE_REFERENCE);
+		reference.put("lastKnownFileType", fileType);
+		reference.put(KEY_PATH, path);
+		String name = new File(path).getName();
+		if(!name.equals(path)){
+			reference.put(KEY_NAME, name);
+		}
+		reference.put(KEY_SOURCE_TREE, sourceTree);
+		String id = addObject(reference);
+		addId(group, KEY_CHILDREN, id);
+		return id;
+	}
+
+	/**
+	 * Removes the file reference, from the groups that contain it and
+	 * from all the build phases. A variant group can also be removed, 
+	 * together with its file references. A variant group that is left 
+	 * empty is removed as well.
+	 *
+	 * @param fileRefId id of a file reference or a variant group
+	 * @return false if there was no such file reference
+	 */
+	public boolean removeFileReference(String fileRefId){
+		NSDictionary reference = root.getObject(fileRefId);
+		boolean variantGroup = isa(reference, ISA_VARIANT_GROUP);
+		if(!variantGroup && !isa(reference, ISA_FILE_REFERENCE))
+			return false;
+		if(variantGroup){
+			for (String child : getIds(reference, KEY_CHILDREN)) {
+				root.getObjects().remove(child);
+			}
+		}
+		List<String> emptied = new ArrayList<String>();
+		for (String id : root.getObjects().allKeys()) {
+			NSDictionary object = root.getObject(id);
+			if(isGroup(object)){
+				if(removeId(object, KEY_CHILDREN, fileRefId) && isa(object, ISA_VARIANT_GROUP) 
+						&& getArray(object, KEY_CHILDREN).length == 0){
+					emptied.add(id);
+				}
+			}else if(isa(object, ISA_BUILD_FILE) && fileRefId.equals(getString(object, KEY_FILE_REF))){
+				removeBuildFile(id);
+			}
+		}
+		root.getObjects().remove(fileRefId);
+		dirty = true;
+		for (String id : emptied) {
+			removeFileReference(id);
+		}
+		return true;
+	}
+
+	/**
+	 * @param targetId
+	 * @param phaseType one of the PHASE_ constants
+	 * @return id of the first build phase of the type on the target or null
+	 */
+	public String findBuildPhase(String targetId, String phaseType){
+		for (String id : getIds(root.getObject(targetId), KEY_BUILD_PHASES)) {
+			if(isa(root.getObject(id), phaseType)){
+				return id;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a build phase of the given type to the end of the target's
+	 * build phases. If the target already has one its id is returned instead.
+	 *
+	 * @param targetId
+	 * @param phaseType one of the PHASE_ constants
+	 * @return id of the build phase
+	 * @throws IllegalArgumentException if there is no such target
+	 */
+	public String addBuildPhase(String targetId, String phaseType){
+		NSDictionary target = root.getObject(targetId);
+		if(!isa(target, ISA_NATIVE_TARGET))
+			throw new IllegalArgumentException(targetId + " is not a target");
+		String existing = findBuildPhase(targetId, phaseType);
+		if(existing != null )
+			return existing;
+		NSDictionary phase = newObject(phaseType);
+		phase.put("buildActionMask", "2147483647");
+		phase.put(KEY_FILES, new NSArray(0));
+		phase.put("runOnlyForDeploymentPostprocessing", "0");
+		String id = addObject(phase);
+		addId(target, KEY_BUILD_PHASES, id);
+		return id;
+	}
+
+	/**
+	 * Removes the build phase from the target together with its build files.
+	 *
+	 * @param targetId
+	 * @param phaseId
+	 * @return false if the target does not have the build phase
+	 */
+	public boolean removeBuildPhase(String targetId, String phaseId){
+		NSDictionary target = root.getObject(targetId);
+		if(target == null || !removeId(target, KEY_BUILD_PHASES, phaseId))
+			return false;
+		for (String buildFile : getIds(root.getObject(phaseId), KEY_FILES)) {
+			root.getObjects().remove(buildFile);
+		}
+		root.getObjects().remove(phaseId);
+		dirty = true;
+		return true;
+	}
+
+	/**
+	 * Adds the file reference to the build phase. If the build phase
+	 * already includes the file the existing build file is returned.
+	 *
+	 * @param phaseId
+	 * @param fileRefId
+	 * @return id of the PBXBuildFile
+	 * @throws IllegalArgumentException if there is no such build phase
+	 */
+	public String addToBuildPhase(String phaseId, String fileRefId){
+		NSDictionary phase = root.getObject(phaseId);
+		if(phase == null || !(phase.objectForKey(KEY_FILES) instanceof NSArray))
+			throw new IllegalArgumentException(phaseId + " is not a build phase");
+		String existing = findBuildFile(phase, fileRefId);
+		if(existing != null )
+			return existing;
+		NSDictionary buildFile = newObject(ISA_BUILD_FILE);
+		buildFile.put(KEY_FILE_REF, fileRefId);
+		String id = addObject(buildFile);
+		addId(phase, KEY_FILES, id);
+		return id;
+	}
+
+	/**
+	 * Removes the file reference from the build phase.
+	 *
+	 * @param phaseId
+	 * @param fileRefId
+	 * @return false if the build phase does not include the file
+	 */
+	public boolean removeFromBuildPhase(String phaseId, String fileRefId){
+		NSDictionary phase = root.getObject(phaseId);
+		String buildFile = findBuildFile(phase, fileRefId);
+		if(buildFile == null )
+			return false;
+		removeId(phase, KEY_FILES, buildFile);
+		root.getObjects().remove(buildFile);
+		dirty = true;
+		return true;
+	}
+
+	/**
+	 * Returns the value of a build setting on the build configuration of 
+	 * the project, not the targets.
+	 * 
+	 * @param configuration name of the configuration such as <i>Release</i>
+	 * @param name name of the setting
+	 * @return value or null if the setting is not set or is not a string
+	 */
+	public String getBuildSetting(String configuration, String name){
+		for (String id : getIds(root.getObject(getString(getRootProject(), KEY_CONFIGURATION_LIST)), KEY_CONFIGURATIONS)) {
+			NSDictionary config = root.getObject(id);
+			if(configuration.equals(getString(config, KEY_NAME))){
+				return getString(getDictionary(config, KEY_BUILD_SETTINGS), name);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Sets a build setting on all the build configurations of the project, 
+	 * not the targets.
+	 * 
+	 * @param name name of the setting
+	 * @param value
+	 * @return true if the setting was changed on any of the configurations
+	 */
+	public boolean setBuildSetting(String name, String value){
+		boolean changed = false;
+		for (String id : getIds(root.getObject(getString(getRootProject(), KEY_CONFIGURATION_LIST)), KEY_CONFIGURATIONS)) {
+			NSDictionary config = root.getObject(id);
+			if(config == null )
+				continue;
+			NSDictionary settings = getDictionary(config, KEY_BUILD_SETTINGS);
+			if(settings == null ){
+				settings = new NSDictionary();
+				config.put(KEY_BUILD_SETTINGS, settings);
+			}
+			if(!value.equals(getString(settings, name))){
+				settings.put(name, value);
+				changed = true;
+			}
+		}
+		if(changed){
+			dirty = true;
+		}
+		return changed;
+	}
+
+	/**
+	 * @return the underlying project file
+	 */
+	public XCodeBuildFileRoot getBuildFileRoot() {
+		return root;
+	}
+
+	private String findBuildFile(NSDictionary phase, String fileRefId){
+		for (String id : getIds(phase, KEY_FILES)) {
+			if(fileRefId.equals(getString(root.getObject(id), KEY_FILE_REF))){
+				return id;
+			}
+		}
+		return null;
+	}
+
+	private void removeBuildFile(String buildFileId){
+		for (String id : root.getObjects().allKeys()) {
+			NSDictionary object = root.getObject(id);
+			if(object != null && object.objectForKey(KEY_FILES) instanceof NSArray){
+				removeId(object, KEY_FILES, buildFileId);
+			}
+		}
+		root.getObjects().remove(buildFileId);
+	}
+
+	private NSDictionary getRootProject(){
+		return root.getObject(root.getRootObjectId());
+	}
+
+	private String addObject(NSDictionary object){
+		String id;
+		do{
+			id = UUID.randomUUID().toString().replace("-", "").substring(0, 24).toUpperCase(Locale.ENGLISH);
+		}while(root.getObjects().containsKey(id));
+		root.getObjects().put(id, object);
+		dirty = true;
+		return id;
+	}
+
+	private void addId(NSDictionary object, String key, String id){
+		NSObject[] current = getArray(object, key);
+		NSObject[] values = new NSObject[current.length + 1];
+		System.arraycopy(current, 0, values, 0, current.length);
+		values[current.length] = new NSString(id);
+		object.put(key, new NSArray(values));
+		dirty = true;
+	}
+
+	private boolean removeId(NSDictionary object, String key, String id){
+		NSObject[] current = getArray(object, key);
+		List<NSObject> values = new ArrayList<NSObject>(current.length);
+		for (NSObject value : current) {
+			if(!(value instanceof NSString && id.equals(((NSString) value).getContent()))){
+				values.add(value);
+			}
+		}
+		if(values.size() == current.length)
+			return false;
+		object.put(key, new NSArray(values.toArray(new NSObject[values.size()])));
+		dirty = true;
+		return true;
+	}
+
+	private static List<String> getIds(NSDictionary object, String key){
+		NSObject[] values = getArray(object, key);
+		List<String> ids = new ArrayList<String>(values.length);
+		for (NSObject value : values) {
+			if(value instanceof NSString){
+				ids.add(((NSString) value).getContent());
+			}
+		}
+		return ids;
+	}
+
+	private static NSObject[] getArray(NSDictionary object, String key){
+		NSObject value = object == null ? null : object.objectForKey(key);
+		return value instanceof NSArray ? ((NSArray) value).getArray() : new NSObject[0];
+	}
+
+	private static NSDictionary newObject(String isa){
+		NSDictionary object = new NSDictionary();
+		object.put(ISA, isa);
+		return object;
+	}
+
+	private static boolean isGroup(NSDictionary object){
+		return isa(object, ISA_GROUP) || isa(object, ISA_VARIANT_GROUP);
+	}
+
+	private static boolean isa(NSDictionary object, String isa){
+		return isa.equals(getString(object, ISA));
+	}
+
+	private static NSDictionary getDictionary(NSDictionary object, String key){
+		NSObject value = object == null ? null : object.objectForKey(key);
+		return value instanceof NSDictionary ? (NSDictionary) value : null;
+	}
+
+	private static String getString(NSDictionary object, String key){
+		NSObject value = object == null ? null : object.objectForKey(key);
+		return value instanceof NSString ? ((NSString) value).getContent() : null;
+	}
+
+	private static String guessFileType(String path){
+		String name = new File(path).getName();
+		int dot = name.lastIndexOf('.');
+		String type = dot < 0 ? null : FILE_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ENGLISH));
+		return type == null ? "text" : type;
+	}
+}
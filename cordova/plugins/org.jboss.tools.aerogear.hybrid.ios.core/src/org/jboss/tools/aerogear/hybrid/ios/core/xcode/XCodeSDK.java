@@ -12,11 +12,21 @@ package org.jboss.tools.aerogear.hybrid.ios.core.xcode;
 
 public class XCodeSDK {
 	private String description; 
+	private String name;
 
-	XCodeSDK(String definitionString){
+	public XCodeSDK(String definitionString){
 		this.description = definitionString;
 	}
 	
+	/**
+	 * @param description description such as <i>Simulator - iOS 6.1</i>
+	 * @param name the -sdk parameter value such as <i>iphonesimulator6.1</i>
+	 */
+	public XCodeSDK(String description, String name){
+		this.description = description;
+		this.name = name;
+	}
+	
 	public String getDescription(){
 		return description;
 	}
@@ -29,13 +39,34 @@ public class XCodeSDK {
 		return description.contains("Simulator");
 	}
 	
+	/**
+	 * Returns the name of this SDK that can be passed to the -sdk 
+	 * parameter of xcodebuild such as <i>iphonesimulator6.1</i>
+	 * 
+	 * @return sdk name
+	 */
+	public String getName(){
+		if(name != null )
+			return name;
+		if(isSimulator())
+			return XCodeBuild.SDK_IPHONE_SIMULATOR + getVersion();
+		if(isIOS())
+			return "iphoneos" + getVersion();
+		return "macosx" + getVersion();
+	}
+	
 	public String getVersion(){
 		String[] tokens = description.split(" ");
 		for (String string : tokens) {
-			if ( Character.isDigit(string.charAt(0)))
+			if (!string.isEmpty() && Character.isDigit(string.charAt(0)))
 				return string;
 		}
 		return "";
 	}
 	
+	@Override
+	public String toString() {
+		return getDescription() + " (" + getName() + ")";
+	}
+	
 }
@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Red Hat, Inc.
+ * Distributed under license by Red Hat, Inc. All rights reserved.
+ * This program is made available under the terms of the
+ * Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ *  Contributors:
+ *       Red Hat, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.jboss.tools.aerogear.hybrid.ios.core.xcode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.jboss.tools.aerogear.hybrid.core.HybridCore;
+import org.jboss.tools.aerogear.hybrid.core.util.ExternalProcessUtility;
+import org.jboss.tools.aerogear.hybrid.core.util.ProcessResult;
+import org.jboss.tools.aerogear.hybrid.ios.core.IOSCore;
+
+/**
+ * Inventory of the installed Xcode, its version and SDKs. The output of
+ * <i>xcodebuild -version</i> and <i>xcodebuild -showsdks</i> is parsed
+ * once and cached for the Xcode install that is active. The inventory is
+ * read again if a different Xcode is selected or the selected one is
+ * updated. The active Xcode is also resolved once, <i>xcode-select</i> 
+ * is only run again when its selection changes.
+ *
+ * @author Gorkem Ercan
+ *
+ */
+public final class XCodeToolchain {
+
+	private static final Pattern SDK_LINE = Pattern.compile("^\\s*(\\S.*?)\\s+-sdk\\s+(\\S+)\\s*$", Pattern.MULTILINE);
+	private static final Pattern VERSION_LINE = Pattern.compile("^\\s*Xcode\\s+(\\S+)", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
+	private static final Pattern BUILD_LINE = Pattern.compile("^\\s*Build version\\s+(\\S+)", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
+	private static final long QUERY_TIMEOUT = 30000;
+	// where xcode-select keeps the selected developer directory, newer versions use the link
+	private static final File[] SELECTION_FILES = { 
+		new File("/var/db/xcode_select_link"), 
+		new File("/usr/share/xcode-select/xcode_dir_path") };
+
+	private static final Object lock = new Object();
+	private static volatile XCodeToolchain current;
+	private static volatile DeveloperDirSelection selection;
+
+	/*
+	 * The developer directory xcode-select returned and the state of 
+	 * its selection files at the time. 
+	 */
+	private static final class DeveloperDirSelection {
+		final String signature;
+		final String developerDir;
+
+		DeveloperDirSelection(String signature, String developerDir) {
+			this.signature = signature;
+			this.developerDir = developerDir;
+		}
+	}
+
+	private final String developerDir;
+	private final long stamp;
+	private final String version;
+	private final String buildVersion;
+	private final List<XCodeSDK> sdks;
+
+	private XCodeToolchain(String developerDir, long stamp, String version, String buildVersion, List<XCodeSDK> sdks){
+		this.developerDir = developerDir;
+		this.stamp = stamp;
+		this.version = version;
+		this.buildVersion = buildVersion;
+		this.sdks = Collections.unmodifiableList(sdks);
+	}
+
+	/**
+	 * Returns the inventory of the active Xcode, running xcodebuild only
+	 * if the cached inventory is for a different or modified Xcode install.
+	 *
+	 * @return toolchain
+	 * @throws CoreException if Xcode is not installed or xcodebuild fails
+	 */
+	public static XCodeToolchain getToolchain() throws CoreException{
+		String developerDir = findDeveloperDir();
+		long stamp = developerDir == null ? 0 : new File(developerDir).lastModified();
+		XCodeToolchain toolchain = current;
+		if(toolchain != null && toolchain.isFor(developerDir, stamp)){
+			return toolchain;
+		}
+		synchronized (lock) {
+			toolchain = current;
+			if(toolchain != null && toolchain.isFor(developerDir, stamp)){
+				return toolchain;
+			}
+			toolchain = load(developerDir, stamp);
+			current = toolchain;
+			return toolchain;
+		}
+	}
+
+	/**
+	 * Drops the cached inventory and the resolved developer directory.
+	 */
+	public static void reset(){
+		current = null;
+		selection = null;
+	}
+
+	/**
+	 * @return the developer directory of the Xcode install or null if
+	 * it can not be determined
+	 */
+	public String getDeveloperDir() {
+		return developerDir;
+	}
+
+	/**
+	 * @return Xcode version such as <i>4.6.2</i>, null if it can not be determined
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return Xcode build version such as <i>4H1003</i>, may be null
+	 */
+	public String getBuildVersion() {
+		return buildVersion;
+	}
+
+	/**
+	 * @return all the installed SDKs in the order xcodebuild lists them
+	 */
+	public List<XCodeSDK> getSDKs() {
+		return sdks;
+	}
+
+	/**
+	 * @return iOS simulator SDKs
+	 */
+	public List<XCodeSDK> getSimulatorSDKs(){
+		List<XCodeSDK> simulators = new ArrayList<XCodeSDK>();
+		for (XCodeSDK sdk : sdks) {
+			if(sdk.isSimulator()){
+				simulators.add(sdk);
+			}
+		}
+		return simulators;
+	}
+
+	/**
+	 * @return the iOS simulator SDK with the highest version or null if
+	 * there are none
+	 */
+	public XCodeSDK getLatestSimulatorSDK(){
+		XCodeSDK latest = null;
+		for (XCodeSDK sdk : getSimulatorSDKs()) {
+			if(latest == null || compareVersions(sdk.getVersion(), latest.getVersion()) > 0){
+				latest = sdk;
+			}
+		}
+		return latest;
+	}
+
+	/**
+	 * @param description
+	 * @return the SDK with the given description or null
+	 */
+	public XCodeSDK findSDK(String description){
+		for (XCodeSDK sdk : sdks) {
+			if(sdk.getDescription().equals(description)){
+				return sdk;
+			}
+		}
+		return null;
+	}
+
+	private boolean isFor(String developerDir, long stamp){
+		return stamp == this.stamp && (developerDir == null ? this.developerDir == null : developerDir.equals(this.developerDir));
+	}
+
+	private static XCodeToolchain load(String developerDir, long stamp) throws CoreException{
+		ExternalProcessUtility processUtility = new ExternalProcessUtility();
+		ProcessResult versionResult = processUtility.execQuery("xcodebuild -version", null, null, QUERY_TIMEOUT);
+		String output = versionResult.getOutput();
+		String version = find(VERSION_LINE, output);
+		if(!versionResult.isOK() || version == null ){
+			throw new CoreException(new Status(IStatus.ERROR, IOSCore.PLUGIN_ID,
+					"Can not retrieve xcode version: " + versionResult.getErrorOutput()));
+		}
+		ProcessResult sdkResult = processUtility.execQuery("xcodebuild -showsdks", null, null, QUERY_TIMEOUT);
+		if(!sdkResult.isOK()){
+			throw new CoreException(new Status(IStatus.ERROR, IOSCore.PLUGIN_ID,
+					"Can not retrieve xcode SDKs: " + sdkResult.getErrorOutput()));
+		}
+		List<XCodeSDK> sdks = parseSDKs(sdkResult.getOutput());
+		if(HybridCore.isTracing(HybridCore.TRACE_DEFAULT, HybridCore.TRACE_INFO)){
+			HybridCore.trace(HybridCore.TRACE_DEFAULT, HybridCore.TRACE_INFO, "Xcode " + version + " at " + developerDir + " SDKs " + sdks);
+		}
+		return new XCodeToolchain(developerDir, stamp, version, find(BUILD_LINE, output), sdks);
+	}
+
+	static List<XCodeSDK> parseSDKs(String output){
+		List<XCodeSDK> sdks = new ArrayList<XCodeSDK>();
+		Matcher matcher = SDK_LINE.matcher(output);
+		while(matcher.find()){
+			sdks.add(new XCodeSDK(matcher.group(1), matcher.group(2)));
+		}
+		return sdks;
+	}
+
+	private static String find(Pattern pattern, String text){
+		Matcher matcher = pattern.matcher(text);
+		return matcher.find() ? matcher.group(1) : null;
+	}
+
+	private static String findDeveloperDir(){
+		String dir = System.getenv("DEVELOPER_DIR");
+		if(dir != null && !dir.trim().isEmpty()){
+			return dir.trim();
+		}
+		String signature = getSelectionSignature();
+		DeveloperDirSelection cached = selection;
+		if(cached != null && cached.signature.equals(signature)){
+			return cached.developerDir;
+		}
+		String path = null;
+		try{
+			ProcessResult result = new ExternalProcessUtility().execQuery("xcode-select -print-path", null, null, QUERY_TIMEOUT);
+			path = result.getOutput().trim();
+			if(!result.isOK() || path.isEmpty()){
+				path = null;
+			}
+		}catch(CoreException e){
+			// not cached, tried again on the next call
+			return null;
+		}
+		selection = new DeveloperDirSelection(signature, path);
+		return path;
+	}
+
+	/*
+	 * Changes when xcode-select -switch is run, without running a process. 
+	 */
+	private static String getSelectionSignature(){
+		StringBuilder signature = new StringBuilder();
+		for (File file : SELECTION_FILES) {
+			String path;
+			try{
+				path = file.getCanonicalPath();
+			}catch(IOException e){
+				path = file.getAbsolutePath();
+			}
+			signature.append(path).append('@').append(file.lastModified()).append(';');
+		}
+		return signature.toString();
+	}
+
+	/**
+	 * Compares dotted version strings numerically, <i>6.1</i> is less than <i>6.10</i>
+	 */
+	static int compareVersions(String v1, String v2){
+		String[] p1 = v1.split("\\.");
+		String[] p2 = v2.split("\\.");
+		for (int i = 0; i < Math.max(p1.length, p2.length); i++) {
+			int n1 = i < p1.length ? toNumber(p1[i]) : 0;
+			int n2 = i < p2.length ? toNumber(p2[i]) : 0;
+			if(n1 != n2){
+				return n1 < n2 ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	private static int toNumber(String part){
+		int end = 0;
+		while(end < part.length() && Character.isDigit(part.charAt(end))){
+			end++;
+		}
+		if(end == 0)
+			return 0;
+		try{
+			return Integer.parseInt(part.substring(0, end));
+		}catch(NumberFormatException e){
+			return Integer.MAX_VALUE;
+		}
+	}
+}
@@ -23,6 +23,7 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.jboss.tools.aerogear.hybrid.core.HybridCore;
 import org.jboss.tools.aerogear.hybrid.core.HybridProject;
 import org.jboss.tools.aerogear.hybrid.core.platform.AbstractPlatformProjectGenerator;
 import org.jboss.tools.aerogear.hybrid.ios.core.IOSCore;
@@ -30,6 +31,9 @@ import org.osgi.framework.Bundle;
 
 public class XcodeProjectGenerator extends AbstractPlatformProjectGenerator{
 	
+	// build setting of the template that points to the CordovaLib archive for the SDK
+	private static final String CORDOVALIB_PRODUCTS = "CORDOVALIB_PRODUCTS";
+	
 	public XcodeProjectGenerator(IProject project, File generationFolder) {
 		super(project, generationFolder);
 	}
@@ -43,7 +47,8 @@ public class XcodeProjectGenerator extends AbstractPlatformProjectGenerator{
 				throw new CoreException(new Status(IStatus.ERROR, IOSCore.PLUGIN_ID, "Not a hybrid mobile project, can not generate files"));
 			}
 
-			generateCordovaLib();
+			// the project links the archives built under it for each SDK
+			File cordovaLib = CordovaLibrary.getRootDirectory();
 			
 			Bundle bundle = IOSCore.getContext().getBundle();
 			File destinationDir = getDestination();
@@ -55,11 +60,19 @@ public class XcodeProjectGenerator extends AbstractPlatformProjectGenerator{
 				prjdir.mkdirs();
 			}
 			directoryCopy(bundle.getEntry("/templates/project/__TESTING__"), toURL(prjdir)  );		
-			directoryCopy(bundle.getEntry("/templates/project/__TESTING__.xcodeproj"), toURL(new File(destinationDir, name+".xcodeproj")));	
 			
 			HashMap<String, String > values = new HashMap<String, String>();
 			values.put("__TESTING__", name);
 			values.put("--ID--", hybridProject.getAppName());
+			values.put("__CORDOVALIB__", toPBXString(cordovaLib.getAbsolutePath()));
+			
+			File pbxproj = new File(destinationDir, name+".xcodeproj/project.pbxproj");
+			if(!updateProject(pbxproj, cordovaLib)){
+				directoryCopy(bundle.getEntry("/templates/project/__TESTING__.xcodeproj"), toURL(pbxproj.getParentFile()));
+				templatedFileCopy(bundle.getEntry("/templates/project/__TESTING__.xcodeproj/project.pbxproj"),
+						toURL(pbxproj), 
+						values);
+			}
 			
 			templatedFileCopy(bundle.getEntry("/templates/project/__TESTING__-Info.plist"), 
 					toURL(new File(prjdir, name+"-Info.plist")), 
@@ -68,10 +81,6 @@ public class XcodeProjectGenerator extends AbstractPlatformProjectGenerator{
 					toURL(new File(prjdir, name+"-Prefix.pch")),
 					values);
 			
-			
-			templatedFileCopy(bundle.getEntry("/templates/project/__TESTING__.xcodeproj/project.pbxproj"),
-					toURL(new File(destinationDir, name+".xcodeproj/project.pbxproj")), 
-					values);
 			templatedFileCopy(bundle.getEntry("/templates/project/__TESTING__/Classes/AppDelegate.h"),
 					toURL(new File(prjdir, "/Classes/AppDelegate.h")),
 					values);
@@ -94,12 +103,38 @@ public class XcodeProjectGenerator extends AbstractPlatformProjectGenerator{
 		
 	}
 	
-	private File generateCordovaLib() throws IOException{
-		File cordovaLibDirectory = new File(getDestination(),"CordovaLib");
-		if ( !cordovaLibDirectory.exists() ){
-			directoryCopy(IOSCore.getContext().getBundle().getEntry("/templates/CordovaLib"), toURL(new File(getDestination(),"CordovaLib")));
+	/**
+	 * Updates the project that was generated before instead of rendering 
+	 * the template again. The file is only written if something changed, 
+	 * so the next build of an unchanged project stays incremental.
+	 * 
+	 * @return false if there is no project, it can not be read or it is 
+	 * from an older template, it should be generated from the template
+	 */
+	private static boolean updateProject(File pbxproj, File cordovaLib) throws CoreException{
+		if(!pbxproj.isFile())
+			return false;
+		XCodeProject project;
+		try{
+			project = new XCodeProject(pbxproj);
+		}catch(CoreException e){
+			HybridCore.log(IStatus.WARNING, "Generating " + pbxproj + " again, it can not be read", e);
+			return false;
+		}
+		if(project.getBuildSetting("Release", CORDOVALIB_PRODUCTS) == null ){
+			// generated by an older version that built CordovaLib with the project
+			return false;
 		}
-		return cordovaLibDirectory;
+		project.setBuildSetting(CORDOVALIB_PRODUCTS, new File(cordovaLib, "$(SDK_NAME)").getPath());
+		project.save();
+		return true;
+	}
+	
+	/**
+	 * Escapes the value to be used inside a quoted string on project.pbxproj
+	 */
+	private static String toPBXString(String value){
+		return value.replace("\\", "\\\\").replace("\"", "\\\"");
 	}
 	
 	@Override
@@ -109,7 +144,7 @@ public class XcodeProjectGenerator extends AbstractPlatformProjectGenerator{
 
 	@Override
 	protected void replaceCordovaPlatformFiles() throws IOException{
-		File cordovaLib = generateCordovaLib();
+		File cordovaLib = CordovaLibrary.getLibraryDirectory();
 		fileCopy(toURL(new File(cordovaLib,"cordova.ios.js")), toURL(new File(getPlatformWWWDirectory(), "cordova.js")));
 		
 	}
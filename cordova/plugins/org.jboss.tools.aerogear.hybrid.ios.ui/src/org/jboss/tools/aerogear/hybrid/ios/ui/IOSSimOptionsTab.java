@@ -22,6 +22,10 @@ import java.util.List;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.debug.core.ILaunchConfiguration;
 import org.eclipse.debug.core.ILaunchConfigurationWorkingCopy;
 import org.eclipse.debug.ui.AbstractLaunchConfigurationTab;
@@ -38,6 +42,7 @@ import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Group;
 import org.eclipse.swt.widgets.Label;
@@ -48,8 +53,8 @@ import org.eclipse.ui.dialogs.ElementListSelectionDialog;
 import org.eclipse.ui.ide.IDE;
 import org.jboss.tools.aerogear.hybrid.core.HybridCore;
 import org.jboss.tools.aerogear.hybrid.core.HybridProject;
-import org.jboss.tools.aerogear.hybrid.ios.core.xcode.XCodeBuild;
 import org.jboss.tools.aerogear.hybrid.ios.core.xcode.XCodeSDK;
+import org.jboss.tools.aerogear.hybrid.ios.core.xcode.XCodeToolchain;
 
 public class IOSSimOptionsTab extends AbstractLaunchConfigurationTab {
 	private static final String TXT_SDK_VER_DEFAULT = "Default";
@@ -59,6 +64,8 @@ public class IOSSimOptionsTab extends AbstractLaunchConfigurationTab {
 	private Button btnCheckRetina;
 	private Button btnTall;
 	private Combo comboSDKVer;
+	// SDK of the launch configuration, selected once the SDKs are loaded
+	private String sdkDescription;
 	
 	private class DirtyListener implements Listener{
 		@Override
@@ -160,18 +167,54 @@ public class IOSSimOptionsTab extends AbstractLaunchConfigurationTab {
 		btnTall = new Button(grpSimulator, SWT.CHECK);
 		btnTall.setText("Tall");
 		btnTall.addListener(SWT.Selection, dirtyFlagListener);
-		XCodeBuild build = new XCodeBuild();
-		try{
-			List<XCodeSDK> list = build.showSdks();
-			for (XCodeSDK sdk : list) {
-				if(sdk.isSimulator()){
-					comboSDKVer.add(sdk.getDescription());
+		loadSDKs();
+	}
+	
+	/*
+	 * Reading the SDKs may run xcodebuild, which can take a while. 
+	 */
+	private void loadSDKs(){
+		final Display display = comboSDKVer.getDisplay();
+		Job job = new Job("Reading iOS simulator SDKs") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				List<XCodeSDK> list = null;
+				try{
+					list = XCodeToolchain.getToolchain().getSimulatorSDKs();
+				}catch(CoreException e){
+					// shown on the combo
+				}
+				final List<XCodeSDK> sdks = list;
+				if(!display.isDisposed()){
+					display.asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							fillSDKs(sdks);
+						}
+					});
 				}
+				return Status.OK_STATUS;
 			}
-		}
-		catch (CoreException e) {
-				comboSDKVer.add("error: defaults to latest");
+		};
+		job.setSystem(true);
+		job.schedule();
+	}
+	
+	private void fillSDKs(List<XCodeSDK> sdks){
+		if(comboSDKVer.isDisposed())
+			return;
+		boolean selectConfigured = comboSDKVer.getSelectionIndex() <= 0;
+		if(sdks == null ){
+			comboSDKVer.add("error: defaults to latest");
+		}else{
+			for (XCodeSDK sdk : sdks) {
+				comboSDKVer.add(sdk.getDescription());
 			}
+		}
+		if(selectConfigured && sdkDescription != null ){
+			int index = comboSDKVer.indexOf(sdkDescription);
+			comboSDKVer.select(index < 0 ? 0 : index);
+		}
 	}
 
 	@Override
@@ -199,6 +242,7 @@ public class IOSSimOptionsTab extends AbstractLaunchConfigurationTab {
 		
 		try{ 
 			String sdkVer = configuration.getAttribute(ATTR_SIMULATOR_SDK_DESCRIPTION, TXT_SDK_VER_DEFAULT);
+			sdkDescription = sdkVer;
 			int index = comboSDKVer.indexOf(sdkVer);
 			if(index <0 )//it is possible that the selected SDK version is no longer available
 				index=0; // it can be either uninstalled or the launch config is shared. fall back to default